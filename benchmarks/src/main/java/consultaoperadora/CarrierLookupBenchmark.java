@@ -0,0 +1,146 @@
+package consultaoperadora;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classificação por operadora, em telefones por segundo:
+ * getOperadora (normalização + cache por faixa), lookupOperadora (consulta completa no libphonenumber,
+ * sem cache), identifyCarrier (só o mapa de operadoras, com o número já parseado) e o fallback por prefixo.
+ * getOperadoras classifica todos os números do campo (-Dconsulta.phones=all), para comparar com o
+ * getOperadora nos mesmos campos (1 a 3 números cada).
+ * Com table=mapped a tabela por faixa é o arquivo persistente (CarrierCache.open), em vez do array em memória.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarrierLookupBenchmark {
+
+    private static final int PHONES = 4096;
+
+    @Param({"memory", "mapped"})
+    public String table;
+
+    private Path cacheDir;
+
+    private String[] fields;
+    private String[] normalized;
+    private PhoneNumber[] parsed;
+
+    @Setup
+    public void setup() throws NumberParseException, IOException {
+        // Cada valor do parâmetro roda num fork próprio: a tabela é escolhida uma vez por JVM
+        if ("mapped".equals(table)) {
+            cacheDir = Files.createTempDirectory("consulta-operadoras");
+            CarrierCache.open(cacheDir);
+        }
+
+        Random random = new Random(42);
+        fields = SyntheticData.phoneFields(random, PHONES, 0.1);
+
+        // Números já normalizados (55 + DDD + número) para os métodos que recebem o número pronto
+        normalized = new String[PHONES];
+        for (int i = 0; i < PHONES; ) {
+            CharSequence number = Main.normalizeFirstPhoneNumber(SyntheticData.phoneField(random, 0));
+            if (number.length() >= 12) normalized[i++] = number.toString();
+        }
+
+        PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+        parsed = new PhoneNumber[PHONES];
+        for (int i = 0; i < PHONES; i++) {
+            parsed[i] = phoneUtil.parse(normalized[i], "BR");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (cacheDir != null) {
+            Files.deleteIfExists(cacheDir.resolve(CarrierCache.FILE_NAME));
+            Files.deleteIfExists(cacheDir);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int getOperadora() {
+        int hash = 0;
+        for (String field : fields) {
+            hash += Main.getOperadora(field).ordinal();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int getOperadorasAll() {
+        int hash = 0;
+        for (String field : fields) {
+            hash += Main.getOperadoras(field, PhonePriority.ALL, 8);
+        }
+        return hash;
+    }
+
+    // A prioridade para fixo encerra a linha no primeiro fixo encontrado
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int getOperadorasFixed() {
+        int hash = 0;
+        for (String field : fields) {
+            hash += Main.getOperadoras(field, PhonePriority.FIXED, 8);
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int lookupOperadora() {
+        int hash = 0;
+        for (String number : normalized) {
+            hash += Main.lookupOperadora(number).length();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int identifyCarrier() {
+        int hash = 0;
+        for (int i = 0; i < parsed.length; i++) {
+            hash += Main.identifyCarrier(parsed[i], normalized[i]).length();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHONES)
+    public int identifyCarrierFallback() {
+        int hash = 0;
+        for (String number : normalized) {
+            hash += Main.identifyCarrierFallback(number).length();
+        }
+        return hash;
+    }
+}
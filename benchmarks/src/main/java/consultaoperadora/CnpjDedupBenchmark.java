@@ -0,0 +1,79 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deduplicação de CNPJs: antigo HashSet&lt;String&gt; (trim + regex) contra o CnpjSet (long, heap e off-heap).
+ * Cada invocação deduplica o lote inteiro num conjunto novo, como o processFile faz por arquivo.
+ * Rodar com -prof gc para comparar a alocação por CNPJ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CnpjDedupBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    // Fração de CNPJs repetidos no lote
+    @Param({"0.1"})
+    public double duplicateRatio;
+
+    private String[] cnpjs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cnpjs = SyntheticData.cnpjs(new Random(42), rows, duplicateRatio);
+    }
+
+    @Benchmark
+    public int hashSetOfStrings() {
+        Set<String> processedCnpjs = new HashSet<>();
+        int unique = 0;
+        for (String field : cnpjs) {
+            String cnpj = field.trim();
+            if (cnpj.isEmpty() || !cnpj.matches("^\\d{14}$")) continue;
+            if (processedCnpjs.add(cnpj)) unique++;
+        }
+        return unique;
+    }
+
+    @Benchmark
+    public int cnpjSetHeap() {
+        return dedup(new CnpjSet(false));
+    }
+
+    @Benchmark
+    public int cnpjSetOffHeap() {
+        return dedup(new CnpjSet(true));
+    }
+
+    private int dedup(CnpjSet processedCnpjs) {
+        int unique = 0;
+        for (String field : cnpjs) {
+            long cnpj = CnpjSet.parse(field);
+            if (cnpj < 0) continue;
+            if (processedCnpjs.add(cnpj)) unique++;
+        }
+        return unique;
+    }
+}
@@ -0,0 +1,132 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contenção no índice global de CNPJs (deduplicação entre arquivos): várias threads chamando
+ * {@link CnpjIndex#offer} ao mesmo tempo, como na primeira fase do -Dconsulta.dedup.global.
+ * O índice é recriado a cada iteração; cada thread grava a sua própria sequência de CNPJs, com
+ * uma parte em comum entre as threads (o mesmo CNPJ em arquivos diferentes).
+ *
+ * As consultas ({@link CnpjIndex#rankOf}, segunda fase) rodam num índice preenchido uma vez por trial,
+ * separadas em CNPJs presentes e ausentes (a sondagem até a posição vazia é mais longa).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CnpjIndexBenchmark {
+
+    private static final int CNPJS_PER_THREAD = 1 << 20;
+    private static final int INDEXED_CNPJS = 1 << 21;
+
+    private CnpjIndex index;
+
+    @Setup(Level.Iteration)
+    public void newIndex() {
+        index = new CnpjIndex();
+    }
+
+    // Índice como no fim da primeira fase: os CNPJs pares estão nele, os ímpares não
+    @State(Scope.Benchmark)
+    public static class Filled {
+        CnpjIndex index;
+        long[] present;
+        long[] absent;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            Random random = new Random(42);
+            index = new CnpjIndex();
+            present = new long[INDEXED_CNPJS];
+            absent = new long[INDEXED_CNPJS];
+            for (int i = 0; i < INDEXED_CNPJS; i++) {
+                long cnpj = (long) (random.nextDouble() * 5e13) * 2;
+                present[i] = cnpj;
+                absent[i] = cnpj + 1;
+                index.offer(cnpj, i & 15);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        long[] cnpjs;
+        int next;
+        int rank;
+        int lookup;
+
+        @Setup(Level.Trial)
+        public void setup(ThreadParams thread) {
+            rank = thread.getThreadIndex();
+            Random random = new Random(rank);
+            lookup = random.nextInt(INDEXED_CNPJS);
+            cnpjs = new long[CNPJS_PER_THREAD];
+            for (int i = 0; i < cnpjs.length; i++) {
+                // 20% dos CNPJs vêm de uma faixa compartilhada por todas as threads
+                cnpjs[i] = random.nextInt(5) == 0
+                        ? random.nextInt(CNPJS_PER_THREAD)
+                        : (long) (random.nextDouble() * 1e14);
+            }
+        }
+
+        long nextCnpj() {
+            long cnpj = cnpjs[next];
+            next = (next + 1) & (CNPJS_PER_THREAD - 1);
+            return cnpj;
+        }
+
+        int nextLookup() {
+            lookup = (lookup + 1) & (INDEXED_CNPJS - 1);
+            return lookup;
+        }
+    }
+
+    @Benchmark
+    @Threads(6)
+    public void offer6Threads(Worker worker) {
+        index.offer(worker.nextCnpj(), worker.rank);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void offer16Threads(Worker worker) {
+        index.offer(worker.nextCnpj(), worker.rank);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void offer32Threads(Worker worker) {
+        index.offer(worker.nextCnpj(), worker.rank);
+    }
+
+    // Segunda fase: só leituras, sem lock
+    @Benchmark
+    @Threads(16)
+    public int rankOfPresent16Threads(Filled filled, Worker worker) {
+        return filled.index.rankOf(filled.present[worker.nextLookup()]);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int rankOfAbsent16Threads(Filled filled, Worker worker) {
+        return filled.index.rankOf(filled.absent[worker.nextLookup()]);
+    }
+}
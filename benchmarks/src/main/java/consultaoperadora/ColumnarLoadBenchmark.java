@@ -0,0 +1,125 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Carga dos dados de uma UF por um consumidor das saídas: ler de novo os CSVs "{UF} - {OPERADORA}.csv"
+ * contra mapear o "{UF} - colunar.bin". Nos dois casos cada linha vira CNPJ (long) e as colunas de
+ * texto como String; as saídas são gravadas uma vez pelo CarrierWriters com a saída colunar ativada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarLoadBenchmark {
+
+    private static final String STATE = "PE";
+    private static final String[] HEADER =
+            {"cnpj_completo", "razao_social", "endereco_completo", "email", "ano_abertura", "telefones"};
+
+    @Param({"200000"})
+    public int rows;
+
+    private Path workDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("consulta-colunar");
+        Random random = new Random(42);
+        String[] cnpjs = SyntheticData.cnpjs(random, rows, 0);
+        String[] phones = SyntheticData.phoneFields(random, rows, 0.1);
+        PhoneNormalizer normalizer = new PhoneNormalizer();
+        Operadora[] operadoras = Operadora.values();
+        String[] row = new String[HEADER.length];
+        CsvRecord record = new CsvRecord() {
+            @Override
+            public int fieldCount() {
+                return row.length;
+            }
+
+            @Override
+            public CharSequence field(int index) {
+                return row[index];
+            }
+        };
+        try (CarrierWriters writers = new CarrierWriters(STATE, workDir.toString(), HEADER, true)) {
+            for (int i = 0; i < rows; i++) {
+                row[0] = cnpjs[i];
+                row[1] = "EMPRESA " + i + " LTDA";
+                row[2] = "RUA DA AURORA, " + i + ", RECIFE";
+                row[3] = "contato" + i + "@empresa.com.br";
+                row[4] = String.valueOf(1980 + i % 40);
+                row[5] = phones[i];
+                // A classificação não importa aqui: distribui as linhas pelas operadoras
+                Operadora operadora = normalizer.normalizeFirst(phones[i])
+                        ? operadoras[(int) (normalizer.toLong() % operadoras.length)]
+                        : Operadora.SEM_OPERADORA;
+                writers.write(operadora, record);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long parseCsv() throws IOException {
+        long checksum = 0;
+        for (Operadora operadora : Operadora.values()) {
+            Path csv = workDir.resolve(STATE + " - " + operadora.name() + ".csv");
+            if (!Files.exists(csv)) continue;
+            try (MappedCsvReader reader = new MappedCsvReader(csv.toFile(), ';', HEADER.length)) {
+                reader.next(); // cabeçalho
+                while (reader.next()) {
+                    checksum += CnpjSet.parse(reader.field(0));
+                    for (int i = 1; i < HEADER.length; i++) {
+                        checksum += reader.field(i).toString().length();
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long mapColumnar() throws IOException {
+        long checksum = 0;
+        try (ColumnarFile file = ColumnarFile.open(workDir.resolve(STATE + ColumnarFile.SUFFIX))) {
+            for (ColumnarFile.Group group : file.groups()) {
+                for (int row = 0; row < group.rows(); row++) {
+                    checksum += group.cnpj(row);
+                    for (ColumnarFile.Text text : ColumnarFile.Text.values()) {
+                        checksum += group.text(text, row).length();
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+}
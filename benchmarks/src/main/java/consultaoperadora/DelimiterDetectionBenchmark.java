@@ -0,0 +1,94 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Detecção do formato por arquivo, até o cabeçalho lido: o CsvFormat na abertura do MappedCsvReader
+ * (amostra da primeira janela mapeada, uma abertura só) contra a detecção antiga, que abria o arquivo
+ * uma vez a mais para ler o cabeçalho e testava ',', ';' e TAB com String.split, seguida da abertura
+ * do leitor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelimiterDetectionBenchmark {
+
+    @Param({";", ",", "TAB"})
+    public String delimiter;
+
+    private static final char[] CANDIDATES = {',', ';', '\t'};
+
+    private File csvFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        csvFile = File.createTempFile("delimitador_al_", ".csv");
+        SyntheticData.writeCsv(csvFile, 100, "TAB".equals(delimiter) ? '\t' : delimiter.charAt(0), 0.1, 0.0, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        csvFile.delete();
+    }
+
+    @Benchmark
+    public int sniff() throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(csvFile, 6, 0)) {
+            reader.next();
+            return reader.format().delimiter + reader.fieldCount();
+        }
+    }
+
+    @Benchmark
+    public int headerSplit() throws IOException {
+        char delimiter = detectByHeader(csvFile);
+        try (MappedCsvReader reader = new MappedCsvReader(csvFile, delimiter, 6)) {
+            reader.next();
+            return delimiter + reader.fieldCount();
+        }
+    }
+
+    // A detecção que o processFile usava antes do CsvFormat (sem o log)
+    private static char detectByHeader(File csvFile) throws IOException {
+        String headerLine;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                StandardCharsets.ISO_8859_1))) {
+            headerLine = br.readLine();
+        }
+        if (headerLine == null) throw new IOException("Arquivo vazio");
+        char best = ',';
+        int maxColumns = 0;
+        for (char delimiter : CANDIDATES) {
+            int columns = headerLine.split(Pattern.quote(String.valueOf(delimiter))).length;
+            if (columns > maxColumns) {
+                maxColumns = columns;
+                best = delimiter;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,63 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalização do primeiro telefone do campo: o scanner atual (Main.normalizeFirstPhoneNumber)
+ * contra o regex original (PhoneNormalizer.normalizeWithRegex). Resultado em telefones por segundo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhoneNormalizationBenchmark {
+
+    private static final int FIELDS = 10_000;
+
+    // Fração de campos sujos (vazios, "()", sem DDD...)
+    @Param({"0.1", "0.5"})
+    public double messiness;
+
+    private String[] fields;
+
+    @Setup
+    public void setup() {
+        fields = SyntheticData.phoneFields(new Random(42), FIELDS, messiness);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIELDS)
+    public int scanner() {
+        int digits = 0;
+        for (String field : fields) {
+            digits += Main.normalizeFirstPhoneNumber(field).length();
+        }
+        return digits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIELDS)
+    public int regex() {
+        int digits = 0;
+        for (String field : fields) {
+            digits += PhoneNormalizer.normalizeWithRegex(field).length();
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,110 @@
+package consultaoperadora;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Processamento completo de um arquivo (leitura, validação, deduplicação, classificação e gravação
+ * das saídas por operadora) com o processFile. Além de arquivos/s, os contadores "rows" e
+ * "megabytes" dão a vazão em linhas/s e MB/s.
+ *
+ * As pastas de entrada e saída são temporárias; a propriedade consulta.outputFolder é definida
+ * antes do primeiro acesso à classe Main, que lê a configuração na inicialização.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProcessFileBenchmark {
+
+    @Param({"200000"})
+    public int rows;
+
+    // Fração de campos sujos (ver SyntheticData)
+    @Param({"0.1"})
+    public double messiness;
+
+    // "mapped" ou "opencsv" (leitura sequencial); o arquivo é pequeno demais para a leitura paralela
+    @Param({"mapped", "opencsv"})
+    public String reader;
+
+    // Linhas entre checkpoints (0 desativa), para medir o custo do checkpoint na vazão
+    @Param({"0", "50000"})
+    public int checkpointRows;
+
+    // Threads do pool de CPU (classificação dos lotes)
+    @Param({"2"})
+    public int cpuThreads;
+
+    // Telefones classificados por linha: só o primeiro ou todos (prioridade padrão, todas as operadoras)
+    @Param({"first", "all"})
+    public String phones;
+
+    private Path workDir;
+    private File csvFile;
+    private AsyncLogger logger;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long rows;
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("consulta-bench");
+        System.setProperty("consulta.outputFolder", workDir.resolve("saida").toString());
+        System.setProperty("consulta.reader", reader);
+        System.setProperty("consulta.checkpoint.rows", String.valueOf(checkpointRows));
+        System.setProperty("consulta.cpuThreads", String.valueOf(cpuThreads));
+        System.setProperty("consulta.phones", phones);
+        Files.createDirectories(workDir.resolve("saida"));
+
+        csvFile = workDir.resolve("al_ativos.csv").toFile();
+        SyntheticData.writeCsv(csvFile, rows, ';', messiness, 0.05, 42);
+
+        logger = new AsyncLogger(new PrintStream(OutputStream.nullOutputStream()), Writer.nullWriter());
+        Main.useLogger(logger);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        logger.close();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void processFile(Throughput throughput) {
+        Main.processFile(csvFile, 0);
+        throughput.rows += rows;
+        throughput.megabytes += csvFile.length() / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,150 @@
+package consultaoperadora;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Geradores de dados sintéticos para os benchmarks: CNPJs, telefones e CSVs no formato das
+ * exportações do Nordeste (ISO-8859-1, cabeçalho com as 6 colunas usadas + colunas extras do ETL).
+ *
+ * O parâmetro {@code messiness} (0 a 1) controla a fração de campos sujos: CNPJs com espaços ou
+ * tamanho errado, telefones vazios, com "()" ou sem DDD, campos entre aspas com delimitador ou
+ * quebra de linha e linhas incompletas.
+ */
+final class SyntheticData {
+
+    // DDDs do Nordeste (AL, BA, CE, MA, PB, PE, PI, RN, SE) e alguns de fora
+    private static final int[] DDDS = {82, 71, 73, 74, 75, 77, 85, 88, 98, 99, 83, 81, 87, 86, 89, 84, 79, 11, 21};
+    private static final String[] RAZOES = {
+            "COMERCIO DE ALIMENTOS LTDA", "JOSÉ DA SILVA ME", "PADARIA SÃO JOÃO", "CONSTRUTORA NORDESTE S/A",
+            "FARMÁCIA POPULAR EIRELI", "MERCADINHO BOA VISTA", "AUTO PEÇAS CARIRI LTDA"};
+    private static final String[] RUAS = {"RUA DA AURORA", "AV BOA VIAGEM", "RUA DO SOL", "AV FERNANDES LIMA", "TRAVESSA DAS FLORES"};
+
+    private SyntheticData() {
+    }
+
+    /**
+     * CNPJs de 14 dígitos, com uma fração de repetidos e alguns campos sujos (espaços nas pontas,
+     * vazios ou com tamanho errado), como nas exportações reais.
+     */
+    static String[] cnpjs(Random random, int count, double duplicateRatio) {
+        String[] cnpjs = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                cnpjs[i] = cnpjs[random.nextInt(i)];
+                continue;
+            }
+            String cnpj = String.format("%014d", (long) (random.nextDouble() * 1e14));
+            double dirt = random.nextDouble();
+            if (dirt < 0.02) cnpj = " " + cnpj + " ";
+            else if (dirt < 0.03) cnpj = "";
+            else if (dirt < 0.04) cnpj = cnpj.substring(0, 11);
+            cnpjs[i] = cnpj;
+        }
+        return cnpjs;
+    }
+
+    /** Campos "telefones" com 1 a 3 números nos formatos aceitos e, conforme {@code messiness}, lixo. */
+    static String[] phoneFields(Random random, int count, double messiness) {
+        String[] fields = new String[count];
+        for (int i = 0; i < count; i++) {
+            fields[i] = phoneField(random, messiness);
+        }
+        return fields;
+    }
+
+    static String phoneField(Random random, double messiness) {
+        if (random.nextDouble() < messiness) {
+            switch (random.nextInt(5)) {
+                case 0: return "";
+                case 1: return "()";
+                case 2: return "SEM TELEFONE";
+                case 3: return random.nextInt(100000000) + "";
+                default: return "(" + ddd(random) + ")  " + (3000 + random.nextInt(1000)) + " - " + digits(random, 4);
+            }
+        }
+        StringBuilder field = new StringBuilder();
+        int phones = 1 + random.nextInt(3);
+        for (int p = 0; p < phones; p++) {
+            if (p > 0) field.append(" / ");
+            field.append(phone(random));
+        }
+        return field.toString();
+    }
+
+    private static String phone(Random random) {
+        int ddd = ddd(random);
+        switch (random.nextInt(4)) {
+            case 0: return "(" + ddd + ") 9" + (6000 + random.nextInt(4000)) + "-" + digits(random, 4);
+            case 1: return "(" + ddd + ") " + (2000 + random.nextInt(8000)) + "-" + digits(random, 4);
+            case 2: return ddd + "-" + (20000000 + random.nextInt(80000000));
+            default: return ddd + " 9" + (6000 + random.nextInt(4000)) + " " + digits(random, 4);
+        }
+    }
+
+    /**
+     * Grava um CSV de entrada com {@code rows} linhas de dados (mais o cabeçalho).
+     *
+     * @param delimiter     ',', ';' ou '\t'
+     * @param duplicateRatio fração de linhas que repetem um CNPJ anterior
+     */
+    static void writeCsv(File file, int rows, char delimiter, double messiness, double duplicateRatio, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        String[] cnpjs = cnpjs(random, rows, duplicateRatio);
+        String d = String.valueOf(delimiter);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1))) {
+            out.write(String.join(d, "cnpj_completo", "razao_social", "endereco_completo", "email", "ano_abertura",
+                    "telefones", "situacao_cadastral", "cnae_principal"));
+            out.write('\n');
+            for (int i = 0; i < rows; i++) {
+                String razao = RAZOES[random.nextInt(RAZOES.length)];
+                String endereco = RUAS[random.nextInt(RUAS.length)] + d + " " + (1 + random.nextInt(2000));
+                if (random.nextDouble() < messiness) {
+                    // Campo entre aspas com aspas escapadas e quebra de linha
+                    razao = razao + " \"\"FILIAL\"\"\nCENTRO";
+                }
+                String[] row = {
+                        cnpjs[i],
+                        quote(razao),
+                        quote(endereco),
+                        "contato" + i + "@empresa.com.br",
+                        String.valueOf(1980 + random.nextInt(45)),
+                        quoteIfNeeded(phoneField(random, messiness), delimiter),
+                        "ATIVA",
+                        digits(random, 7)};
+                // Linha incompleta (menos de 6 colunas), descartada pelo processFile
+                int columns = random.nextDouble() < messiness / 10 ? 4 : row.length;
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) out.write(delimiter);
+                    out.write(row[c]);
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String quote(String field) {
+        return '"' + field + '"';
+    }
+
+    private static String quoteIfNeeded(String field, char delimiter) {
+        return field.indexOf(delimiter) >= 0 ? quote(field) : field;
+    }
+
+    private static int ddd(Random random) {
+        return DDDS[random.nextInt(DDDS.length)];
+    }
+
+    private static String digits(Random random, int count) {
+        StringBuilder digits = new StringBuilder(count);
+        for (int i = 0; i < count; i++) digits.append((char) ('0' + random.nextInt(10)));
+        return digits.toString();
+    }
+}
@@ -0,0 +1,226 @@
+package consultaoperadora;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log assíncrono: as threads de processamento só enfileiram a mensagem (com o horário da chamada)
+ * num buffer circular limitado, e uma única thread em segundo plano formata, escreve no console e
+ * no arquivo de log e faz um flush por lote, em vez de um flush por linha.
+ *
+ * Quem loga nunca espera por I/O: se o buffer estiver cheio a mensagem é descartada e o total de
+ * descartes é registrado no próprio log. O progresso é acumulado por UF (LongAdder) e mostrado numa
+ * única linha de status no console, redesenhada pela thread do log em intervalos fixos.
+ */
+class AsyncLogger implements AutoCloseable {
+
+    private static final int CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final long STATUS_INTERVAL_MS = 500;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private final AtomicInteger progressVersion = new AtomicInteger();
+
+    private final PrintStream console;
+    private final PrintWriter file;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // Usados só pela thread do log
+    private final NumberFormat numberFormat = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+    private final StringBuilder consoleBuffer = new StringBuilder();
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTime;
+    private int statusLength;
+    private int renderedVersion;
+    private long lastStatus;
+
+    AsyncLogger(PrintStream console, Writer file) {
+        this.console = console;
+        this.file = new PrintWriter(file, false);
+        this.thread = new Thread(this::run, "async-logger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        // Garante que as últimas mensagens sejam gravadas mesmo se o main sair antes do close()
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "async-logger-shutdown"));
+    }
+
+    /** Enfileira a mensagem; nunca bloqueia. */
+    void log(String message) {
+        log(message, null);
+    }
+
+    /** Enfileira a mensagem e o stack trace do erro (o stack trace vai só para o arquivo). */
+    void log(String message, Throwable error) {
+        if (!queue.offer(new Entry(System.currentTimeMillis(), message, error))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /** Registra um arquivo em andamento para a UF (vários arquivos da mesma UF somam no mesmo contador). */
+    void progressStart(String state) {
+        progress.computeIfAbsent(state, s -> new Progress()).active.incrementAndGet();
+        progressVersion.incrementAndGet();
+    }
+
+    /** Soma linhas lidas ao progresso da UF. */
+    void progress(String state, long rows) {
+        progress.computeIfAbsent(state, s -> new Progress()).rows.add(rows);
+        progressVersion.incrementAndGet();
+    }
+
+    /** Soma as últimas linhas e marca um arquivo da UF como concluído. */
+    void progressDone(String state, long rows) {
+        Progress p = progress.computeIfAbsent(state, s -> new Progress());
+        p.rows.add(rows);
+        p.active.decrementAndGet();
+        progressVersion.incrementAndGet();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed) {
+            try {
+                Entry first = queue.poll(STATUS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            write(batch, false);
+            batch.clear();
+        }
+    }
+
+    // Grava um lote (e os descartes pendentes), redesenha a linha de status se mudou e faz um único flush
+    private void write(List<Entry> batch, boolean last) {
+        long lost = dropped.getAndSet(0);
+        if (!batch.isEmpty() || lost > 0) {
+            clearStatus();
+            for (Entry entry : batch) {
+                writeLine(entry.time, entry.message);
+                if (entry.error != null) entry.error.printStackTrace(file);
+            }
+            if (lost > 0) {
+                writeLine(System.currentTimeMillis(), lost + " mensagens de log descartadas (fila cheia)");
+            }
+            file.flush();
+        }
+
+        long now = System.currentTimeMillis();
+        int version = progressVersion.get();
+        if (!progress.isEmpty() && (statusLength == 0 && version != 0
+                || version != renderedVersion && (last || now - lastStatus >= STATUS_INTERVAL_MS))) {
+            renderStatus();
+            renderedVersion = version;
+            lastStatus = now;
+        }
+        if (last && statusLength > 0) {
+            consoleBuffer.append(System.lineSeparator());
+            statusLength = 0;
+        }
+
+        if (consoleBuffer.length() > 0) {
+            console.print(consoleBuffer);
+            console.flush();
+            consoleBuffer.setLength(0);
+        }
+    }
+
+    private void writeLine(long time, String message) {
+        String line = "[" + format(time) + "] " + message;
+        consoleBuffer.append(line).append(System.lineSeparator());
+        file.println(line);
+    }
+
+    // Apaga a linha de status antes de escrever mensagens normais no console
+    private void clearStatus() {
+        if (statusLength == 0) return;
+        consoleBuffer.append('\r');
+        for (int i = 0; i < statusLength; i++) consoleBuffer.append(' ');
+        consoleBuffer.append('\r');
+        statusLength = 0;
+    }
+
+    private void renderStatus() {
+        StringBuilder status = new StringBuilder("Progresso:");
+        for (Map.Entry<String, Progress> e : new TreeMap<>(progress).entrySet()) {
+            Progress p = e.getValue();
+            status.append(" [").append(e.getKey()).append(' ')
+                    .append(numberFormat.format(p.rows.sum()))
+                    .append(p.active.get() > 0 ? "" : " ✓").append(']');
+        }
+        status.append(" linhas lidas");
+        int previous = statusLength;
+        consoleBuffer.append('\r').append(status);
+        for (int i = status.length(); i < previous; i++) consoleBuffer.append(' ');
+        statusLength = Math.max(status.length(), previous);
+    }
+
+    // O horário só é reformatado quando muda o segundo
+    private String format(long time) {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochMilli(time));
+        }
+        return cachedTime;
+    }
+
+    /** Para a thread do log depois de gravar tudo o que já foi enfileirado. Pode ser chamado mais de uma vez. */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest, true);
+        file.close();
+    }
+
+    private static final class Entry {
+        final long time;
+        final String message;
+        final Throwable error;
+
+        Entry(long time, String message, Throwable error) {
+            this.time = time;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private static final class Progress {
+        final LongAdder rows = new LongAdder();
+        final AtomicInteger active = new AtomicInteger();
+    }
+}
@@ -0,0 +1,319 @@
+package consultaoperadora;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Tabela de resolução de operadora indexada pelo prefixo do número normalizado.
+ *
+ * A classificação do libphonenumber (validade, tipo e operadora) para números do Brasil só depende
+ * do tamanho do número e dos 9 primeiros dígitos (55 + DDD + 5 dígitos): os prefixos de operadora
+ * dos dados do carrier.jar para o código 55 têm no máximo 9 dígitos. Por isso cada resultado obtido
+ * do libphonenumber é guardado numa posição de um byte[] e os demais números da mesma faixa são
+ * resolvidos com uma única leitura de array.
+ *
+ * Com {@link #open} a tabela passa a ser o arquivo {@link #FILE_NAME} da pasta de saída, mapeado em
+ * memória: as faixas resolvidas numa execução valem para as seguintes, e quem reprocessa os mesmos
+ * números só consulta o libphonenumber para as faixas novas. O arquivo guarda uma chave calculada
+ * dos dados do libphonenumber e do carrier.jar para o Brasil (metadados do BR e mapa de operadoras do
+ * 55); quando a biblioteca é atualizada a chave muda e a tabela recomeça vazia.
+ * {@code -Dconsulta.carrierCache.persistent=false} mantém a tabela só em memória.
+ *
+ * A tabela é compartilhada entre as threads (e entre execuções simultâneas, pelo mapeamento) sem
+ * sincronização: escritas de byte são atômicas e duas threads que resolvem a mesma faixa gravam o
+ * mesmo valor. Uma execução interrompida deixa no máximo faixas não gravadas, nunca valores errados.
+ */
+final class CarrierCache {
+
+    static final String FILE_NAME = "operadoras.cache";
+    static final String LOCK_FILE_NAME = FILE_NAME + ".lock";
+
+    // Números de 12 (fixo / 8 dígitos) e 13 dígitos (móvel com o nono dígito)
+    private static final int MIN_LENGTH = 12;
+    private static final int MAX_LENGTH = 13;
+    // Dígitos do prefixo depois do "55": DDD + 5 dígitos
+    private static final int PREFIX_DIGITS = 7;
+    private static final int PREFIXES = 10_000_000;
+    private static final int TABLE_BYTES = (MAX_LENGTH - MIN_LENGTH + 1) * PREFIXES;
+
+    private static final boolean ENABLED = !"false".equals(System.getProperty("consulta.carrierCache"));
+    private static final boolean PERSISTENT =
+            ENABLED && !"false".equals(System.getProperty("consulta.carrierCache.persistent"));
+
+    private static final int MAGIC = 0x4F504343; // "OPCC"
+    // Sobe quando a classificação (lookupOperadora, fallback, Operadora) muda de um jeito que invalida a tabela
+    private static final int FORMAT = 2;
+    // MAGIC, FORMAT, chave dos dados, custo médio (ns) de uma consulta ao libphonenumber na última execução
+    private static final int HEADER_BYTES = 24;
+
+    // Dados do libphonenumber que decidem a classificação dos números do Brasil
+    private static final String[] DATA_RESOURCES = {
+            "/com/google/i18n/phonenumbers/data/PhoneNumberMetadataProto_BR",
+            "/com/google/i18n/phonenumbers/carrier/data/55_en",
+            "/com/google/i18n/phonenumbers/carrier/data/config"};
+
+    // 0 = faixa ainda não resolvida; caso contrário ordinal + 1, com FALLBACK_BIT se a faixa foi resolvida
+    // pelo fallback de prefixo. Trocada pelo open() antes do processamento começar; sem open() é um array
+    // em memória, criado no primeiro uso
+    private static ByteBuffer table;
+    private static MappedByteBuffer header;
+    private static final int FALLBACK_BIT = 0x80;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    // Só com a tabela persistente: faixas já usadas nesta execução (resolvidas agora ou lidas do arquivo),
+    // para contar as consultas ao libphonenumber que o arquivo evitou
+    private static AtomicLongArray used;
+    private static final LongAdder warmHits = new LongAdder();
+    private static final LongAdder stored = new LongAdder();
+    private static long preloaded;
+    private static long lookupNanos;
+
+    private CarrierCache() {
+    }
+
+    /**
+     * Mapeia a tabela persistente da pasta de saída, criando o arquivo (ou recriando, se for de outra
+     * versão do libphonenumber) quando preciso.
+     *
+     * Execuções simultâneas validam e recriam o arquivo uma de cada vez (lock em {@link #LOCK_FILE_NAME}).
+     * A tabela nova é montada num arquivo temporário e só então substitui a antiga: uma execução que
+     * ainda tem a antiga mapeada continua com ela, em vez de ver o arquivo cortado embaixo do mapeamento
+     * (onde o sistema não deixa substituir um arquivo mapeado, como no Windows, o open falha e a tabela
+     * fica só em memória).
+     *
+     * @return descrição do estado da tabela para o log, ou null se a tabela persistente está desativada
+     */
+    static String open(Path folder) throws IOException {
+        if (!PERSISTENT) return null;
+
+        Path file = folder.resolve(FILE_NAME);
+        long key = dataKey();
+        String state;
+        // O lock é liberado quando o canal fecha; o arquivo de lock nunca é substituído
+        try (FileChannel lock = FileChannel.open(folder.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            lock.lock();
+            boolean exists = Files.exists(file);
+            boolean valid = exists && isValid(file, key);
+            if (valid) {
+                state = "reaproveitada";
+            } else {
+                state = exists ? "recriada (outra versão do libphonenumber ou do formato)" : "criada";
+                create(file, key);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                head.order(ByteOrder.LITTLE_ENDIAN);
+                if (valid) {
+                    lookupNanos = head.getLong(16);
+                }
+                // Os mapeamentos continuam válidos depois de fechar o canal
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, TABLE_BYTES);
+                long count = 0;
+                if (valid) {
+                    for (int i = 0; i < TABLE_BYTES; i++) {
+                        if (mapped.get(i) != 0) count++;
+                    }
+                }
+                preloaded = count;
+                used = new AtomicLongArray((TABLE_BYTES + 63) / 64);
+                header = head;
+                table = mapped;
+            }
+        }
+        return state + " em " + file + " (libphonenumber " + version("libphonenumber") + ", carrier " +
+                version("carrier") + ")";
+    }
+
+    // Tamanho, MAGIC, FORMAT e chave conferem com esta versão
+    private static boolean isValid(Path file, long key) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_BYTES + (long) TABLE_BYTES) return false;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(head, 0) < HEADER_BYTES) return false;
+            return head.getInt(0) == MAGIC && head.getInt(4) == FORMAT && head.getLong(8) == key;
+        }
+    }
+
+    // Tabela vazia com a chave desta versão, num temporário da mesma pasta movido por cima do arquivo de uma
+    // vez; uma queda no meio só deixa o temporário para trás
+    private static void create(Path file, long key) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), FILE_NAME + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                head.putInt(0, MAGIC).putInt(4, FORMAT).putLong(8, key);
+                channel.write(head, 0);
+                channel.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) TABLE_BYTES - 1);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Grava no disco as faixas resolvidas nesta execução (a tabela em memória não tem o que gravar).
+     *
+     * @param lookupNanos custo médio de uma consulta ao libphonenumber nesta execução (0 se não houve),
+     *                    guardado para estimar o ganho das próximas
+     */
+    static void flush(long lookupNanos) {
+        if (header == null) return;
+        if (lookupNanos > 0) header.putLong(16, lookupNanos);
+        ((MappedByteBuffer) table).force();
+        header.force();
+    }
+
+    /**
+     * Operadora já resolvida para a faixa do número, ou null se for preciso consultar o libphonenumber.
+     * Faixas resolvidas pelo fallback contam em {@link Metrics#FALLBACKS} a cada acerto, como a consulta contaria.
+     */
+    static Operadora get(CharSequence fullNumber) {
+        int index = indexOf(fullNumber);
+        if (index < 0) return null;
+        int value = table().get(index) & 0xFF;
+        if (value == 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (used != null) markWarm(index);
+        if ((value & FALLBACK_BIT) != 0) Metrics.FALLBACKS.increment();
+        return Operadora.fromOrdinal((value & ~FALLBACK_BIT) - 1);
+    }
+
+    /** Guarda o resultado de uma consulta; {@code fallback} diz se ele veio do fallback de prefixo. */
+    static void put(CharSequence fullNumber, Operadora operadora, boolean fallback) {
+        int index = indexOf(fullNumber);
+        if (index >= 0) {
+            // Marcada como usada antes de aparecer na tabela: os acertos nela não contam como vindos do arquivo
+            if (used != null) markUsed(index);
+            table().put(index, (byte) ((operadora.ordinal() + 1) | (fallback ? FALLBACK_BIT : 0)));
+            stored.increment();
+        }
+    }
+
+    static long hits() {
+        return hits.sum();
+    }
+
+    static long misses() {
+        return misses.sum();
+    }
+
+    /** Faixas já resolvidas no arquivo quando a execução começou. */
+    static long preloaded() {
+        return preloaded;
+    }
+
+    /** Custo médio de uma consulta ao libphonenumber gravado pela execução anterior (0 se não há). */
+    static long lookupNanos() {
+        return lookupNanos;
+    }
+
+    /** Faixas resolvidas pelo libphonenumber nesta execução. */
+    static long stored() {
+        return stored.sum();
+    }
+
+    /** Faixas diferentes resolvidas pelo arquivo: consultas ao libphonenumber que uma execução sem ele faria. */
+    static long warmHits() {
+        return warmHits.sum();
+    }
+
+    private static ByteBuffer table() {
+        ByteBuffer t = table;
+        return t != null ? t : HeapTable.TABLE;
+    }
+
+    // Primeiro acerto da execução numa faixa que veio do arquivo
+    private static void markWarm(int index) {
+        int slot = index >>> 6;
+        long bit = 1L << index;
+        long word = used.get(slot);
+        while ((word & bit) == 0) {
+            if (used.compareAndSet(slot, word, word | bit)) {
+                warmHits.increment();
+                return;
+            }
+            word = used.get(slot);
+        }
+    }
+
+    private static void markUsed(int index) {
+        int slot = index >>> 6;
+        long bit = 1L << index;
+        long word = used.get(slot);
+        while ((word & bit) == 0 && !used.compareAndSet(slot, word, word | bit)) {
+            word = used.get(slot);
+        }
+    }
+
+    // Chave dos dados do Brasil no classpath: muda com qualquer atualização que altere a classificação
+    private static long dataKey() throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        for (String resource : DATA_RESOURCES) {
+            crc.update(resource.getBytes(StandardCharsets.US_ASCII));
+            try (InputStream in = PhoneNumberUtil.class.getResourceAsStream(resource)) {
+                if (in == null) continue; // sem o carrier.jar a classificação cai no fallback: outra chave
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, n);
+                }
+            }
+        }
+        for (Operadora operadora : Operadora.values()) {
+            crc.update(operadora.name().getBytes(StandardCharsets.US_ASCII));
+        }
+        return crc.getValue();
+    }
+
+    // Versão do artefato, lida do pom.properties empacotado no jar; só para o log
+    private static String version(String artifact) {
+        try (InputStream in = PhoneNumberUtil.class.getResourceAsStream(
+                "/META-INF/maven/com.googlecode.libphonenumber/" + artifact + "/pom.properties")) {
+            if (in == null) return "?";
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties.getProperty("version", "?");
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    // Números fora do formato 55 + DDD + 8/9 dígitos não passam pela tabela
+    private static int indexOf(CharSequence fullNumber) {
+        int length = fullNumber.length();
+        if (!ENABLED || length < MIN_LENGTH || length > MAX_LENGTH) return -1;
+
+        int prefix = 0;
+        for (int i = 2; i < 2 + PREFIX_DIGITS; i++) {
+            prefix = prefix * 10 + (fullNumber.charAt(i) - '0');
+        }
+        return (length - MIN_LENGTH) * PREFIXES + prefix;
+    }
+
+    // Tabela só em memória (sem open(), ou com a persistente desativada)
+    private static final class HeapTable {
+        static final ByteBuffer TABLE = ByteBuffer.allocate(ENABLED ? TABLE_BYTES : 0);
+    }
+}
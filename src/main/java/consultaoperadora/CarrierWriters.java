@@ -0,0 +1,306 @@
+package consultaoperadora;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Escritores em streaming dos arquivos "{UF} - {OPERADORA}.csv".
+ *
+ * Cada linha é gravada assim que é classificada, em vez de ser acumulada em memória até o fim
+ * do arquivo de entrada. O pico de memória fica limitado ao tamanho dos buffers (um por operadora)
+ * e não cresce com o tamanho do estado. O formato gravado é o mesmo do antigo exportToCSV:
+ * mesmo cabeçalho, ';' como delimitador, sem aspas e o arquivo só é criado se tiver ao menos uma linha.
+ *
+ * As colunas são copiadas direto do CsvRecord para o buffer da linha, com o mesmo escape do
+ * CSVWriter do OpenCSV configurado com NO_QUOTE_CHARACTER (um '"' antes de '"', ';', '\n' e '\0'),
+ * sem criar Strings intermediárias.
+ *
+ * Cada operadora tem o seu próprio estado (arquivo, buffer da linha e contador): threads diferentes
+ * podem gravar operadoras diferentes ao mesmo tempo, mas cada operadora só pode ser gravada por uma
+ * thread por vez.
+ *
+ * Para o checkpoint, {@link #checkpoint()} descarrega os buffers e devolve o tamanho de cada arquivo;
+ * {@link #resume} reabre os arquivos cortados nesses tamanhos para continuar de onde parou, e
+ * {@link #rollback} faz o mesmo no meio da gravação, para desfazer um arquivo de entrada que falhou.
+ *
+ * Com a saída colunar ativada, as mesmas linhas também vão para "{UF} - colunar.bin"
+ * ({@link ColumnarWriter}); o tamanho desse arquivo ocupa a última posição do checkpoint.
+ */
+class CarrierWriters implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char SEPARATOR = ';'; // Delimitador de saída é o ponto e vírgula
+    private static final char ESCAPE = '"';
+    private static final char LINE_END = '\n';
+
+    private final String state;
+    private final String outputFolder;
+    private final String[] header;
+
+    // Por ordinal da operadora; null enquanto o arquivo não foi criado
+    private final Output[] outputs = new Output[Operadora.values().length];
+    private final boolean columnarOutput;
+    private volatile ColumnarWriter columnar;
+
+    CarrierWriters(String state, String outputFolder, String[] header) {
+        this(state, outputFolder, header, false);
+    }
+
+    CarrierWriters(String state, String outputFolder, String[] header, boolean columnarOutput) {
+        this.state = state;
+        this.outputFolder = outputFolder;
+        this.header = header;
+        this.columnarOutput = columnarOutput;
+    }
+
+    /**
+     * Grava as colunas do cabeçalho (as primeiras do registro) no arquivo da operadora, abrindo o
+     * arquivo (e escrevendo o cabeçalho) na primeira vez. O registro pode ser reaproveitado em seguida.
+     */
+    void write(Operadora operadora, CsvRecord record) throws IOException {
+        Output output = outputs[operadora.ordinal()];
+        if (output == null) {
+            output = open(operadora, false);
+        }
+        output.write(record);
+        if (columnarOutput) {
+            columnar().add(operadora, record);
+        }
+    }
+
+    // O arquivo colunar é criado junto com o primeiro CSV
+    private ColumnarWriter columnar() throws IOException {
+        ColumnarWriter writer = columnar;
+        if (writer == null) {
+            synchronized (this) {
+                writer = columnar;
+                if (writer == null) {
+                    writer = ColumnarWriter.create(columnarPath(outputFolder, state));
+                    columnar = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    private static Path columnarPath(String outputFolder, String state) {
+        return Paths.get(outputFolder, state + ColumnarFile.SUFFIX);
+    }
+
+    int count(Operadora operadora) {
+        Output output = outputs[operadora.ordinal()];
+        return output == null ? 0 : output.count;
+    }
+
+    /** Cópia das quantidades por operadora (por ordinal), para o checkpoint. */
+    int[] counts() {
+        int[] counts = new int[outputs.length];
+        for (Operadora operadora : Operadora.values()) {
+            counts[operadora.ordinal()] = count(operadora);
+        }
+        return counts;
+    }
+
+    /** Quantidade de arquivos de saída efetivamente criados. */
+    int filesWritten() {
+        int files = 0;
+        for (Output output : outputs) {
+            if (output != null) files++;
+        }
+        return files;
+    }
+
+    /** Nomes dos arquivos de saída criados, na ordem das operadoras. */
+    List<String> fileNames() {
+        List<String> names = new ArrayList<>();
+        for (Operadora operadora : Operadora.values()) {
+            if (outputs[operadora.ordinal()] != null) names.add(fileName(operadora));
+        }
+        if (columnar != null) names.add(state + ColumnarFile.SUFFIX);
+        return names;
+    }
+
+    private String fileName(Operadora operadora) {
+        return fileName(state, operadora);
+    }
+
+    static String fileName(String state, Operadora operadora) {
+        // O nome da constante já é o sufixo do arquivo ("SEM_OPERADORA")
+        return state + " - " + operadora.name() + ".csv";
+    }
+
+    /**
+     * Descarrega os buffers e força a gravação em disco.
+     *
+     * @return o tamanho em bytes de cada arquivo de saída, por ordinal da operadora, e por último o do
+     *         arquivo colunar (-1 se não foi criado)
+     */
+    long[] checkpoint() throws IOException {
+        long[] sizes = new long[outputs.length + 1];
+        for (int i = 0; i < outputs.length; i++) {
+            sizes[i] = outputs[i] == null ? -1 : outputs[i].sync();
+        }
+        sizes[outputs.length] = columnar == null ? -1 : columnar.checkpoint();
+        return sizes;
+    }
+
+    /** Se os arquivos de saída da UF ainda existem e têm ao menos os tamanhos registrados no checkpoint. */
+    static boolean canResume(String state, String outputFolder, long[] sizes) throws IOException {
+        if (sizes.length != Operadora.values().length + 1) return false;
+        for (Operadora operadora : Operadora.values()) {
+            if (!canResume(Paths.get(outputFolder, fileName(state, operadora)), sizes[operadora.ordinal()])) {
+                return false;
+            }
+        }
+        return canResume(columnarPath(outputFolder, state), sizes[sizes.length - 1]);
+    }
+
+    private static boolean canResume(Path path, long size) throws IOException {
+        return size < 0 || (Files.exists(path) && Files.size(path) >= size);
+    }
+
+    /**
+     * Retoma a partir de um checkpoint (já conferido com {@link #canResume}): cada arquivo registrado é
+     * cortado no tamanho gravado e reaberto para acrescentar linhas, sem repetir o cabeçalho; arquivos
+     * criados depois do checkpoint são apagados. Deve ser chamado antes de qualquer {@link #write}.
+     */
+    void resume(long[] sizes, int[] savedCounts) throws IOException {
+        for (Operadora operadora : Operadora.values()) {
+            long size = sizes[operadora.ordinal()];
+            Path path = Paths.get(outputFolder, fileName(operadora));
+            if (size < 0) {
+                Files.deleteIfExists(path);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            open(operadora, true).count = savedCounts[operadora.ordinal()];
+        }
+
+        long columnarSize = sizes[outputs.length];
+        Path columnarPath = columnarPath(outputFolder, state);
+        if (columnarSize < 0 || !columnarOutput) {
+            Files.deleteIfExists(columnarPath);
+        } else {
+            columnar = ColumnarWriter.resume(columnarPath, columnarSize);
+        }
+    }
+
+    /**
+     * Desfaz o que foi gravado depois de {@link #checkpoint()} e {@link #counts()} devolverem {@code sizes} e
+     * {@code savedCounts}: fecha os arquivos e os retoma nesses tamanhos, como {@link #resume}.
+     */
+    void rollback(long[] sizes, int[] savedCounts) throws IOException {
+        close();
+        Arrays.fill(outputs, null);
+        columnar = null;
+        resume(sizes, savedCounts);
+    }
+
+    private Output open(Operadora operadora, boolean append) throws IOException {
+        Path outputPath = Paths.get(outputFolder, fileName(operadora));
+        Output output = new Output(new FileOutputStream(outputPath.toFile(), append));
+        outputs[operadora.ordinal()] = output;
+        if (!append) {
+            output.writeHeader(header);
+        }
+        return output;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (Output output : outputs) {
+            if (output == null) continue;
+            try {
+                output.writer.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (columnar != null) {
+            try {
+                columnar.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // Arquivo de uma operadora, com o buffer de montagem da linha
+    private final class Output {
+        private final FileOutputStream stream;
+        private final Writer writer;
+        private char[] line = new char[1024];
+        private int lineLength;
+        private int count;
+
+        Output(FileOutputStream stream) {
+            this.stream = stream;
+            // Charset padrão da JVM, como o FileWriter usado antes
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream), BUFFER_SIZE);
+        }
+
+        void writeHeader(String[] header) throws IOException {
+            lineLength = 0;
+            for (int i = 0; i < header.length; i++) {
+                if (i != 0) append(SEPARATOR);
+                appendField(header[i]);
+            }
+            append(LINE_END);
+            writer.write(line, 0, lineLength);
+        }
+
+        void write(CsvRecord record) throws IOException {
+            lineLength = 0;
+            for (int i = 0; i < header.length; i++) {
+                if (i != 0) append(SEPARATOR);
+                appendField(record.field(i));
+            }
+            append(LINE_END);
+            writer.write(line, 0, lineLength);
+            count++;
+        }
+
+        long sync() throws IOException {
+            writer.flush();
+            FileChannel channel = stream.getChannel();
+            channel.force(false);
+            return channel.position();
+        }
+
+        // Sem aspas em volta do campo: só os caracteres especiais recebem o escape
+        private void appendField(CharSequence field) {
+            for (int i = 0, n = field.length(); i < n; i++) {
+                char c = field.charAt(i);
+                if (c == ESCAPE || c == SEPARATOR || c == '\n' || c == '\0') {
+                    append(ESCAPE);
+                }
+                append(c);
+            }
+        }
+
+        private void append(char c) {
+            if (lineLength == line.length) {
+                char[] bigger = new char[line.length * 2];
+                System.arraycopy(line, 0, bigger, 0, lineLength);
+                line = bigger;
+            }
+            line[lineLength++] = c;
+        }
+    }
+}
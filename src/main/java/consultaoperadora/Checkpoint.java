@@ -0,0 +1,137 @@
+package consultaoperadora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Checkpoint de um arquivo de entrada em processamento, gravado na pasta de saída como
+ * "{arquivo}.checkpoint": até que byte da entrada já foi processado, o tamanho de cada arquivo de
+ * saída nesse ponto, os contadores e o conjunto de CNPJs já vistos.
+ *
+ * Uma execução reiniciada continua da posição gravada: as saídas são cortadas nos tamanhos registrados
+ * (descartando o que foi gravado depois do checkpoint) e a leitura recomeça no byte seguinte.
+ * O checkpoint só vale para a mesma entrada (tamanho e data de modificação), os mesmos arquivos anteriores
+ * da UF (já gravados nas mesmas saídas, conferidos do mesmo jeito) e a mesma configuração; é apagado
+ * quando a UF termina.
+ */
+final class Checkpoint {
+
+    static final String SUFFIX = ".checkpoint";
+    private static final int MAGIC = 0x434B5054; // "CKPT"
+    private static final int VERSION = 3;
+
+    final long inputOffset;
+    final int total;
+    final int uniqueCount;
+    final int[] counts;
+    final long[] outputSizes;
+    final CnpjSet cnpjs;
+
+    Checkpoint(long inputOffset, int total, int uniqueCount, int[] counts, long[] outputSizes, CnpjSet cnpjs) {
+        this.inputOffset = inputOffset;
+        this.total = total;
+        this.uniqueCount = uniqueCount;
+        this.counts = counts;
+        this.outputSizes = outputSizes;
+        this.cnpjs = cnpjs;
+    }
+
+    static Path pathFor(String outputFolder, File csvFile) {
+        return Path.of(outputFolder, csvFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Lê o checkpoint do arquivo; devolve null se não houver, se for de outra versão ou se a entrada,
+     * os arquivos anteriores da UF ou a configuração mudaram desde que foi gravado.
+     *
+     * @param preceding os arquivos da UF processados antes deste nas mesmas saídas, na ordem
+     */
+    static Checkpoint load(Path file, File csvFile, List<File> preceding, String config, boolean offHeap)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!sameFile(in, csvFile) || !config.equals(in.readUTF())) {
+                return null;
+            }
+            if (in.readInt() != preceding.size()) return null;
+            for (File previous : preceding) {
+                if (!sameFile(in, previous)) return null;
+            }
+            long inputOffset = in.readLong();
+            int total = in.readInt();
+            int uniqueCount = in.readInt();
+            int carriers = Operadora.values().length;
+            if (in.readInt() != carriers) return null;
+            int[] counts = new int[carriers];
+            for (int i = 0; i < carriers; i++) {
+                counts[i] = in.readInt();
+            }
+            // Um tamanho por arquivo de saída (os CSVs das operadoras e o colunar)
+            long[] outputSizes = new long[in.readInt()];
+            for (int i = 0; i < outputSizes.length; i++) {
+                outputSizes[i] = in.readLong();
+            }
+            CnpjSet cnpjs = CnpjSet.readFrom(in, offHeap);
+            return new Checkpoint(inputOffset, total, uniqueCount, counts, outputSizes, cnpjs);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Grava num temporário, força para o disco e renomeia por cima do anterior: depois de uma queda
+     * sobra o checkpoint novo ou o antigo, nunca um pela metade.
+     */
+    void save(Path file, File csvFile, List<File> preceding, String config) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeFile(out, csvFile);
+            out.writeUTF(config);
+            out.writeInt(preceding.size());
+            for (File previous : preceding) {
+                writeFile(out, previous);
+            }
+            out.writeLong(inputOffset);
+            out.writeInt(total);
+            out.writeInt(uniqueCount);
+            out.writeInt(counts.length);
+            for (int count : counts) {
+                out.writeInt(count);
+            }
+            out.writeInt(outputSizes.length);
+            for (long size : outputSizes) {
+                out.writeLong(size);
+            }
+            cnpjs.writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Nome, tamanho e data de modificação
+    private static void writeFile(DataOutputStream out, File csvFile) throws IOException {
+        out.writeUTF(csvFile.getName());
+        out.writeLong(csvFile.length());
+        out.writeLong(csvFile.lastModified());
+    }
+
+    private static boolean sameFile(DataInputStream in, File csvFile) throws IOException {
+        return csvFile.getName().equals(in.readUTF())
+                && in.readLong() == csvFile.length()
+                && in.readLong() == csvFile.lastModified();
+    }
+}
@@ -0,0 +1,132 @@
+package consultaoperadora;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice global de CNPJs compartilhado por todos os arquivos, para a deduplicação entre arquivos.
+ *
+ * Guarda, para cada CNPJ, o menor "rank" de arquivo em que ele apareceu: o arquivo de menor rank
+ * fica com o CNPJ e os demais o descartam, independentemente da ordem em que as threads rodam.
+ * A tabela é dividida em faixas (stripes), cada uma com o seu lock e a sua tabela de endereçamento
+ * aberto de long -&gt; int, então threads que gravam CNPJs de faixas diferentes não competem entre si.
+ *
+ * Uso em duas fases: {@link #offer} pode ser chamado por várias threads ao mesmo tempo; depois que
+ * todas terminam (Future.get() estabelece o happens-before), {@link #rankOf} só faz leituras.
+ */
+class CnpjIndex {
+
+    private static final int STRIPES = 256; // potência de 2
+    private static final int STRIPE_INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_LOAD_PERCENT = 60;
+    private static final long EMPTY = -1L; // CNPJs válidos nunca são negativos
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    CnpjIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** Registra que o CNPJ aparece no arquivo de rank {@code rank}, mantendo o menor rank visto. */
+    void offer(long cnpj, int rank) {
+        int h = hash(cnpj);
+        Stripe stripe = stripes[h >>> 24 & (STRIPES - 1)];
+        stripe.lock.lock();
+        try {
+            stripe.offer(cnpj, h, rank);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Rank do arquivo que fica com o CNPJ, ou -1 se ele nunca foi registrado. Só após a fase de {@link #offer}. */
+    int rankOf(long cnpj) {
+        int h = hash(cnpj);
+        return stripes[h >>> 24 & (STRIPES - 1)].rankOf(cnpj, h);
+    }
+
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) size += stripe.size;
+        return size;
+    }
+
+    /** Bytes ocupados pelas tabelas (chave long + rank int por posição). */
+    long footprintBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) bytes += (long) stripe.keys.length * (Long.BYTES + Integer.BYTES);
+        return bytes;
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        long[] keys = newKeys(STRIPE_INITIAL_CAPACITY);
+        int[] ranks = new int[STRIPE_INITIAL_CAPACITY];
+        int size;
+
+        void offer(long cnpj, int h, int rank) {
+            int mask = keys.length - 1;
+            int i = h & mask;
+            while (true) {
+                long current = keys[i];
+                if (current == EMPTY) break;
+                if (current == cnpj) {
+                    if (rank < ranks[i]) ranks[i] = rank;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = cnpj;
+            ranks[i] = rank;
+            size++;
+            if (size * 100L > (long) keys.length * MAX_LOAD_PERCENT) {
+                rehash(keys.length << 1);
+            }
+        }
+
+        int rankOf(long cnpj, int h) {
+            int mask = keys.length - 1;
+            int i = h & mask;
+            while (true) {
+                long current = keys[i];
+                if (current == EMPTY) return -1;
+                if (current == cnpj) return ranks[i];
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            long[] oldKeys = keys;
+            int[] oldRanks = ranks;
+            keys = newKeys(newCapacity);
+            ranks = new int[newCapacity];
+            int mask = newCapacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                long key = oldKeys[j];
+                if (key == EMPTY) continue;
+                int i = hash(key) & mask;
+                while (keys[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = key;
+                ranks[i] = oldRanks[j];
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+
+    // Mesmo finalizador do MurmurHash3 do CnpjSet; os bits altos escolhem a faixa e os baixos a posição
+    private static int hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe1a85ec3L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,162 @@
+package consultaoperadora;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Conjunto de CNPJs para a deduplicação, guardados como long (14 dígitos cabem em um long).
+ *
+ * Endereçamento aberto com sondagem linear sobre um LongBuffer: 8 bytes por posição, contra os
+ * ~100 bytes por CNPJ do antigo HashSet&lt;String&gt; (String + byte[] + HashMap.Node). O buffer pode
+ * ficar no heap (long[]) ou fora dele (ByteBuffer direto), o que tira a tabela da conta do GC.
+ *
+ * Não é thread-safe: cada arquivo usa a sua instância.
+ */
+class CnpjSet {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Mantém a tabela no máximo 60% ocupada
+    private static final int MAX_LOAD_PERCENT = 60;
+    // Posição vazia; o CNPJ 00000000000000 é guardado à parte
+    private static final long EMPTY = 0L;
+
+    private final boolean offHeap;
+    private LongBuffer slots;
+    private int capacity;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    CnpjSet(boolean offHeap) {
+        this.offHeap = offHeap;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Converte o campo de CNPJ para long, com a mesma regra do antigo
+     * {@code cnpj.trim().matches("^\\d{14}$")}: espaços nas pontas são ignorados e o restante
+     * precisa ter exatamente 14 dígitos.
+     *
+     * @return o CNPJ como long, ou -1 se o campo for inválido
+     */
+    static long parse(CharSequence field) {
+        int start = 0;
+        int end = field.length();
+        // Mesmo critério do String.trim(): tudo até ' ' conta como espaço
+        while (start < end && field.charAt(start) <= ' ') start++;
+        while (end > start && field.charAt(end - 1) <= ' ') end--;
+        if (end - start != 14) return -1;
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** Adiciona o CNPJ; retorna false se ele já estava no conjunto (mesmo contrato do Set.add). */
+    boolean add(long cnpj) {
+        if (cnpj == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int i = hash(cnpj) & mask;
+        while (true) {
+            long current = slots.get(i);
+            if (current == EMPTY) break;
+            if (current == cnpj) return false;
+            i = (i + 1) & mask;
+        }
+
+        slots.put(i, cnpj);
+        size++;
+        if (size * 100L > (long) capacity * MAX_LOAD_PERCENT) {
+            rehash(capacity << 1);
+        }
+        return true;
+    }
+
+    boolean contains(long cnpj) {
+        if (cnpj == EMPTY) return containsZero;
+        int i = hash(cnpj) & mask;
+        while (true) {
+            long current = slots.get(i);
+            if (current == EMPTY) return false;
+            if (current == cnpj) return true;
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Bytes ocupados pela tabela (heap ou memória direta). */
+    long footprintBytes() {
+        return (long) capacity * Long.BYTES;
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /** Grava o conteúdo (quantidade + CNPJs, sem as posições vazias) para o checkpoint. */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        if (containsZero) out.writeLong(EMPTY);
+        for (int i = 0; i < capacity; i++) {
+            long value = slots.get(i);
+            if (value != EMPTY) out.writeLong(value);
+        }
+    }
+
+    /** Reconstrói um conjunto gravado por {@link #writeTo}. */
+    static CnpjSet readFrom(DataInput in, boolean offHeap) throws IOException {
+        CnpjSet set = new CnpjSet(offHeap);
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            set.add(in.readLong());
+        }
+        return set;
+    }
+
+    private void rehash(int newCapacity) {
+        LongBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int j = 0; j < oldCapacity; j++) {
+            long value = old.get(j);
+            if (value == EMPTY) continue;
+            int i = hash(value) & mask;
+            while (slots.get(i) != EMPTY) i = (i + 1) & mask;
+            slots.put(i, value);
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        slots = offHeap
+                ? ByteBuffer.allocateDirect(newCapacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.wrap(new long[newCapacity]);
+    }
+
+    // Finalizador do MurmurHash3: espalha CNPJs sequenciais pela tabela inteira
+    private static int hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe1a85ec3L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,204 @@
+package consultaoperadora;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Leitura da saída colunar binária "{UF} - colunar.bin" (gravada pelo {@link ColumnarWriter}).
+ *
+ * O arquivo é dividido em grupos de linhas de uma única operadora. Em cada grupo as colunas ficam
+ * contíguas: CNPJ e telefone normalizado como long, e as colunas de texto (razão social, endereço,
+ * e-mail, ano de abertura e o campo de telefones original) como um bloco de offsets seguido dos bytes
+ * ISO-8859-1. No fim do arquivo um índice lista os grupos por operadora.
+ *
+ * Os grupos são lidos por memory-mapping, sem parse: carregar os dados de uma UF é mapear o arquivo
+ * e ler as colunas direto dos buffers.
+ *
+ * <pre>
+ * cabeçalho: "COLB" versão
+ * grupo:     "GRUP" operadora(byte) 3 bytes de alinhamento linhas(int) tamanho do grupo(long)
+ *            cnpj[linhas](long) telefone[linhas](long)
+ *            para cada coluna de texto: offsets[linhas + 1](int), bytes, alinhamento a 8 bytes
+ * índice:    grupos(int), para cada grupo: operadora(byte) linhas(int) posição(long)
+ * final:     posição do índice(long) "COLF"
+ * </pre>
+ *
+ * Todos os números são little-endian. O telefone normalizado é 0 quando a linha não tem telefone.
+ */
+final class ColumnarFile implements Closeable {
+
+    static final String SUFFIX = " - colunar.bin";
+
+    static final int MAGIC = 0x424C4F43;       // "COLB"
+    static final int GROUP_MAGIC = 0x50555247; // "GRUP"
+    static final int FOOTER_MAGIC = 0x464C4F43; // "COLF"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int GROUP_HEADER_BYTES = 24;
+    static final int TRAILER_BYTES = 12;
+
+    /** Colunas de texto, na ordem em que são gravadas em cada grupo. */
+    enum Text {
+        RAZAO_SOCIAL(1), ENDERECO_COMPLETO(2), EMAIL(3), ANO_ABERTURA(4), TELEFONES(5);
+
+        // Coluna correspondente no CSV de entrada / no HEADER
+        final int csvColumn;
+
+        Text(int csvColumn) {
+            this.csvColumn = csvColumn;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Group> groups;
+
+    private ColumnarFile(FileChannel channel, List<Group> groups) {
+        this.channel = channel;
+        this.groups = groups;
+    }
+
+    /** Abre o arquivo e mapeia os grupos listados no índice. */
+    static ColumnarFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) throw new IOException("Arquivo colunar truncado: " + file);
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Não é um arquivo colunar (ou é de outra versão): " + file);
+            }
+            ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            long footer = trailer.getLong();
+            if (trailer.getInt() != FOOTER_MAGIC || footer < HEADER_BYTES || footer > size - TRAILER_BYTES) {
+                throw new IOException("Índice do arquivo colunar ausente (gravação interrompida?): " + file);
+            }
+
+            ByteBuffer index = read(channel, footer, (int) (size - TRAILER_BYTES - footer));
+            int count = index.getInt();
+            List<Group> groups = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Operadora operadora = Operadora.fromOrdinal(index.get());
+                int rows = index.getInt();
+                long position = index.getLong();
+                ByteBuffer groupHeader = read(channel, position, GROUP_HEADER_BYTES);
+                groupHeader.position(16);
+                long length = groupHeader.getLong();
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                groups.add(new Group(operadora, rows, data));
+            }
+            return new ColumnarFile(channel, Collections.unmodifiableList(groups));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fim inesperado do arquivo colunar");
+            }
+        }
+        return buffer.flip();
+    }
+
+    List<Group> groups() {
+        return groups;
+    }
+
+    /** Grupos de uma operadora, na ordem em que foram gravados (a ordem das linhas na entrada). */
+    List<Group> groups(Operadora operadora) {
+        List<Group> selected = new ArrayList<>();
+        for (Group group : groups) {
+            if (group.operadora == operadora) selected.add(group);
+        }
+        return selected;
+    }
+
+    long rowCount(Operadora operadora) {
+        long rows = 0;
+        for (Group group : groups) {
+            if (group.operadora == operadora) rows += group.rows;
+        }
+        return rows;
+    }
+
+    long rowCount() {
+        long rows = 0;
+        for (Group group : groups) {
+            rows += group.rows;
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Um grupo de linhas de uma operadora, lido direto do mapeamento. */
+    static final class Group {
+        private final Operadora operadora;
+        private final int rows;
+        private final ByteBuffer data;
+        private final int[] textStart = new int[Text.values().length];
+
+        Group(Operadora operadora, int rows, ByteBuffer data) {
+            this.operadora = operadora;
+            this.rows = rows;
+            this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+            int position = GROUP_HEADER_BYTES + rows * 16;
+            for (Text text : Text.values()) {
+                textStart[text.ordinal()] = position;
+                int bytes = this.data.getInt(position + rows * 4);
+                position = align8(position + (rows + 1) * 4 + bytes);
+            }
+        }
+
+        Operadora operadora() {
+            return operadora;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        long cnpj(int row) {
+            return data.getLong(GROUP_HEADER_BYTES + row * 8);
+        }
+
+        /** 55 + DDD + número, ou 0 se a linha não tem telefone reconhecível. */
+        long phone(int row) {
+            return data.getLong(GROUP_HEADER_BYTES + rows * 8 + row * 8);
+        }
+
+        String text(Text column, int row) {
+            int start = textStart[column.ordinal()];
+            int from = data.getInt(start + row * 4);
+            int to = data.getInt(start + (row + 1) * 4);
+            byte[] bytes = new byte[to - from];
+            data.get(start + (rows + 1) * 4 + from, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        /** O CNPJ com 14 dígitos, como no CSV. */
+        String cnpjText(int row) {
+            return String.format("%014d", cnpj(row));
+        }
+    }
+
+    static int align8(int position) {
+        return (position + 7) & ~7;
+    }
+}
@@ -0,0 +1,209 @@
+package consultaoperadora;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Gravação da saída colunar binária (formato descrito em {@link ColumnarFile}), ao lado dos CSVs.
+ *
+ * Cada operadora acumula as linhas num grupo em memória (no máximo {@link #GROUP_ROWS} linhas); o
+ * grupo cheio é gravado de uma vez no fim do arquivo. Como nos CSVs, operadoras diferentes podem ser
+ * gravadas por threads diferentes ao mesmo tempo, mas cada operadora só por uma thread por vez.
+ * O índice por operadora vai no fim, no {@link #close()}.
+ */
+final class ColumnarWriter implements Closeable {
+
+    static final int GROUP_ROWS = 8192;
+
+    private final FileChannel channel;
+    private final GroupBuffer[] buffers = new GroupBuffer[Operadora.values().length];
+    // Operadora, linhas e posição de cada grupo gravado, para o índice
+    private final List<long[]> directory = new ArrayList<>();
+    private boolean closed;
+
+    private ColumnarWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static ColumnarWriter create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(ColumnarFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ColumnarFile.MAGIC).putInt(ColumnarFile.VERSION).flip();
+        writeFully(channel, header);
+        return new ColumnarWriter(channel);
+    }
+
+    /**
+     * Reabre um arquivo para continuar de um checkpoint: corta no tamanho registrado (sempre o fim de
+     * um grupo, sem índice) e remonta a lista de grupos lendo os cabeçalhos.
+     */
+    static ColumnarWriter resume(Path file, long size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try {
+            channel.truncate(size);
+            ColumnarWriter writer = new ColumnarWriter(channel);
+            ByteBuffer header = ByteBuffer.allocate(ColumnarFile.GROUP_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = ColumnarFile.HEADER_BYTES;
+            while (position < size) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    if (channel.read(header, position + header.position()) < 0) {
+                        throw new IOException("Grupo truncado no arquivo colunar " + file);
+                    }
+                }
+                header.flip();
+                if (header.getInt() != ColumnarFile.GROUP_MAGIC) {
+                    throw new IOException("Grupo inválido no arquivo colunar " + file + " na posição " + position);
+                }
+                int operadora = header.get();
+                header.position(8);
+                int rows = header.getInt();
+                header.position(16);
+                long length = header.getLong();
+                writer.directory.add(new long[]{operadora, rows, position});
+                position += length;
+            }
+            channel.position(size);
+            return writer;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Acrescenta a linha (as colunas do HEADER) ao grupo da operadora. */
+    void add(Operadora operadora, CsvRecord record) throws IOException {
+        GroupBuffer buffer = buffers[operadora.ordinal()];
+        if (buffer == null) {
+            buffer = new GroupBuffer(operadora);
+            buffers[operadora.ordinal()] = buffer;
+        }
+        buffer.add(record);
+        if (buffer.rows == GROUP_ROWS) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Grava os grupos incompletos e força a gravação em disco (checkpoint).
+     *
+     * @return o tamanho do arquivo, onde uma execução retomada continua
+     */
+    long checkpoint() throws IOException {
+        for (GroupBuffer buffer : buffers) {
+            if (buffer != null && buffer.rows > 0) buffer.flush();
+        }
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            for (GroupBuffer buffer : buffers) {
+                if (buffer != null && buffer.rows > 0) buffer.flush();
+            }
+            long footer = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(4 + directory.size() * 13 + ColumnarFile.TRAILER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            index.putInt(directory.size());
+            for (long[] group : directory) {
+                index.put((byte) group[0]).putInt((int) group[1]).putLong(group[2]);
+            }
+            index.putLong(footer).putInt(ColumnarFile.FOOTER_MAGIC).flip();
+            writeFully(channel, index);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Grava o grupo no fim do arquivo e registra no índice; as threads das operadoras se revezam aqui
+    private synchronized void append(Operadora operadora, int rows, ByteBuffer group) throws IOException {
+        directory.add(new long[]{operadora.ordinal(), rows, channel.position()});
+        writeFully(channel, group);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Linhas de uma operadora ainda não gravadas, já separadas por coluna
+    private final class GroupBuffer {
+        private final Operadora operadora;
+        private final long[] cnpjs = new long[GROUP_ROWS];
+        private final long[] phones = new long[GROUP_ROWS];
+        private final byte[][] texts = new byte[ColumnarFile.Text.values().length][4096];
+        private final int[][] ends = new int[ColumnarFile.Text.values().length][GROUP_ROWS];
+        private final PhoneNormalizer normalizer = new PhoneNormalizer();
+        private ByteBuffer out = ByteBuffer.allocate(0);
+        private int rows;
+
+        GroupBuffer(Operadora operadora) {
+            this.operadora = operadora;
+        }
+
+        void add(CsvRecord record) {
+            // O CNPJ já foi validado; fica como long, sem os espaços das pontas
+            cnpjs[rows] = CnpjSet.parse(record.field(0));
+            CharSequence telefones = record.field(ColumnarFile.Text.TELEFONES.csvColumn);
+            long phone = normalizer.normalizeFirst(telefones) ? normalizer.toLong() : 0;
+            phones[rows] = Math.max(phone, 0);
+
+            for (ColumnarFile.Text text : ColumnarFile.Text.values()) {
+                int column = text.ordinal();
+                CharSequence field = record.field(text.csvColumn);
+                int start = rows == 0 ? 0 : ends[column][rows - 1];
+                int n = field.length();
+                byte[] bytes = texts[column];
+                if (start + n > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, start + n));
+                    texts[column] = bytes;
+                }
+                for (int i = 0; i < n; i++) {
+                    char c = field.charAt(i);
+                    // A entrada é lida como ISO-8859-1: todo caractere cabe num byte
+                    bytes[start + i] = (byte) (c <= 0xFF ? c : '?');
+                }
+                ends[column][rows] = start + n;
+            }
+            rows++;
+        }
+
+        void flush() throws IOException {
+            int size = ColumnarFile.GROUP_HEADER_BYTES + rows * 16;
+            for (int column = 0; column < texts.length; column++) {
+                size = ColumnarFile.align8(size + (rows + 1) * 4 + ends[column][rows - 1]);
+            }
+            if (out.capacity() < size) {
+                out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            out.clear();
+            out.putInt(ColumnarFile.GROUP_MAGIC).put((byte) operadora.ordinal()).put((byte) 0).putShort((short) 0)
+                    .putInt(rows).putInt(0).putLong(size);
+            for (int i = 0; i < rows; i++) out.putLong(cnpjs[i]);
+            for (int i = 0; i < rows; i++) out.putLong(phones[i]);
+            for (int column = 0; column < texts.length; column++) {
+                out.putInt(0);
+                for (int i = 0; i < rows; i++) out.putInt(ends[column][i]);
+                out.put(texts[column], 0, ends[column][rows - 1]);
+                while ((out.position() & 7) != 0) out.put((byte) 0);
+            }
+            out.flip();
+            append(operadora, rows, out);
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package consultaoperadora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordenador do modo distribuído ({@code -Dconsulta.mode=coordinator}).
+ *
+ * Os arquivos de entrada são divididos em {@link Shard}s e distribuídos, um por vez, aos {@link Worker}s
+ * que se conectam por socket (protocolo binário simples sobre DataInput/DataOutput). Cada worker devolve
+ * as saídas parciais do trecho pela mesma conexão; elas ficam em "{pasta de saída}/trechos/{id}" até a
+ * junção ({@link ShardMerger}). Se a conexão cai ou o worker informa falha, o trecho volta para a frente
+ * da fila e outro worker (ou o mesmo) tenta de novo, até {@code -Dconsulta.shard.retries} vezes.
+ *
+ * Os workers podem estar em outras máquinas (a pasta de entrada de cada um precisa ter os mesmos arquivos)
+ * ou ser iniciados pelo próprio coordenador como processos locais ({@link #startLocalWorkers}).
+ * Workers com outra configuração de resultado são recusados na conexão.
+ */
+final class Coordinator {
+
+    static final int MAGIC = 0x434E504A; // "CNPJ"
+    static final int PROTOCOL = 1;
+
+    private static final int SHARD_RETRIES = Integer.getInteger("consulta.shard.retries", 2);
+    // Sem resposta do worker nesse tempo, o trecho é dado como perdido (worker travado ou rede caída)
+    private static final int SHARD_TIMEOUT_MS = (int) Math.min(Integer.MAX_VALUE,
+            Long.getLong("consulta.shard.timeoutMinutes", 60) * 60_000);
+    // Trechos pendentes sem nenhum worker conectado por esse tempo são dados como falhos
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("consulta.coordinator.idleSeconds", 300) * 1000;
+    // Propriedades do coordenador que não passam para os workers locais
+    private static final Set<String> COORDINATOR_ONLY = Set.of("consulta.mode", "consulta.coordinator",
+            "consulta.workers.local", "consulta.metrics.port");
+
+    private final String config;
+    private final Path partsFolder;
+    private final AsyncLogger logger;
+    private final int shardCount;
+
+    private final BlockingDeque<Shard> pending = new LinkedBlockingDeque<>();
+    private final Map<Integer, Path> done = new ConcurrentHashMap<>();
+    private final Set<Integer> failed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger remaining;
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final List<Completion> completions = Collections.synchronizedList(new ArrayList<>());
+    private final List<Process> localWorkers = new ArrayList<>();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private ServerSocket server;
+
+    /**
+     * @param shards      na ordem em que devem ser distribuídos
+     * @param partsFolder pasta das saídas parciais recebidas
+     */
+    Coordinator(List<Shard> shards, String config, Path partsFolder, AsyncLogger logger) {
+        this.config = config;
+        this.partsFolder = partsFolder;
+        this.logger = logger;
+        this.shardCount = shards.size();
+        this.pending.addAll(shards);
+        this.remaining = new AtomicInteger(shards.size());
+    }
+
+    /** Abre a porta e começa a aceitar workers; devolve o endereço efetivo ("host:porta"). */
+    String listen(String bind, int port) throws IOException {
+        Files.createDirectories(partsFolder);
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getByName(bind), port));
+        Thread accept = new Thread(this::accept, "coordenador-accept");
+        accept.setDaemon(true);
+        accept.start();
+        return bind + ":" + server.getLocalPort();
+    }
+
+    /**
+     * Inicia {@code count} workers nesta máquina, com o mesmo classpath, as mesmas opções
+     * {@code -Dconsulta.*} (menos as do coordenador), o mesmo encoding padrão e os mesmos limites de heap.
+     * A saída de cada um vai para "worker-{n}.log" na pasta de saída.
+     */
+    void startLocalWorkers(int count, Path logFolder) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 1; i <= count; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                if (argument.startsWith("-Xmx") || argument.startsWith("-Xms")) command.add(argument);
+            }
+            command.add("-Dfile.encoding=" + Charset.defaultCharset().name());
+            for (String key : System.getProperties().stringPropertyNames()) {
+                if (key.startsWith("consulta.") && !COORDINATOR_ONLY.contains(key)) {
+                    command.add("-D" + key + "=" + System.getProperty(key));
+                }
+            }
+            command.add("-Dconsulta.mode=worker");
+            command.add("-Dconsulta.coordinator=127.0.0.1:" + server.getLocalPort());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(Main.class.getName());
+
+            File log = logFolder.resolve("worker-" + i + ".log").toFile();
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                    .start();
+            localWorkers.add(process);
+            logger.log("Worker local " + i + " iniciado (pid " + process.pid() + ", log em " + log + ")");
+        }
+    }
+
+    /**
+     * Espera todos os trechos terminarem (com sucesso ou não) e encerra os workers: os conectados recebem
+     * o aviso de fim; os locais são esperados e, se não saírem, finalizados.
+     */
+    void await() throws InterruptedException {
+        while (remaining.get() > 0) {
+            Thread.sleep(200);
+            // Sem workers: espera alguém conectar, menos quando só havia workers locais e todos já saíram
+            boolean localGone = !localWorkers.isEmpty() && localWorkers.stream().noneMatch(Process::isAlive);
+            if (connected.get() == 0 && (localGone || System.currentTimeMillis() - lastActivity > IDLE_TIMEOUT_MS)) {
+                Shard shard;
+                int abandoned = 0;
+                while ((shard = pending.poll()) != null) {
+                    fail(shard);
+                    abandoned++;
+                }
+                if (abandoned > 0) {
+                    logger.log((localGone ? "Workers locais encerrados" : "Nenhum worker conectado há " +
+                            IDLE_TIMEOUT_MS / 1000 + " s") + ": " + abandoned + " trechos abandonados");
+                }
+            }
+        }
+        for (Process process : localWorkers) {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroy();
+            }
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Nada a fazer: a execução já terminou
+        }
+    }
+
+    /** Pasta com as saídas parciais do trecho, ou null se ele falhou. */
+    Path result(Shard shard) {
+        return done.get(shard.id);
+    }
+
+    int shardCount() {
+        return shardCount;
+    }
+
+    int retries() {
+        return retries.get();
+    }
+
+    int failedShards() {
+        return failed.size();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket), "coordenador-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException e) {
+                return; // porta fechada pelo await()
+            } catch (IOException e) {
+                logger.log("Erro ao aceitar worker: " + e.getMessage());
+            }
+        }
+    }
+
+    // Uma conexão de worker: distribui trechos até acabarem
+    private void serve(Socket socket) {
+        String worker = String.valueOf(socket.getRemoteSocketAddress());
+        boolean registered = false;
+        Shard shard = null;
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            s.setKeepAlive(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+            s.setSoTimeout(30_000);
+            if (in.readInt() != MAGIC || in.readInt() != PROTOCOL) {
+                logger.log("Conexão recusada de " + worker + ": não é um worker desta versão");
+                return;
+            }
+            String workerConfig = in.readUTF();
+            worker = in.readUTF() + " (" + s.getInetAddress().getHostAddress() + ")";
+            if (!config.equals(workerConfig)) {
+                out.writeBoolean(false);
+                out.writeUTF("configuração diferente da do coordenador (" + config + ")");
+                out.flush();
+                logger.log("Worker " + worker + " recusado: configuração " + workerConfig + " diferente de " + config);
+                return;
+            }
+            out.writeBoolean(true);
+            out.flush();
+            registered = true;
+            logger.log("Worker " + worker + " conectado (" + connected.incrementAndGet() + " ativos)");
+            lastActivity = System.currentTimeMillis();
+
+            s.setSoTimeout(SHARD_TIMEOUT_MS);
+            while ((shard = nextShard()) != null) {
+                shard.attempts++;
+                long start = System.nanoTime();
+                out.writeBoolean(true);
+                shard.writeTo(out);
+                out.flush();
+                if (in.readBoolean()) {
+                    Path folder = receive(shard, in);
+                    long end = System.nanoTime();
+                    completions.add(new Completion(worker, shard.length(), start, end));
+                    done.put(shard.id, folder);
+                    remaining.decrementAndGet();
+                    logger.log("✓ Trecho " + shard.label() + " por " + worker + " em " +
+                            String.format("%.1f s", (end - start) / 1e9) + " (" +
+                            formatRate(shard.length(), end - start) + ")");
+                } else {
+                    retry(shard, in.readUTF());
+                }
+                shard = null;
+                lastActivity = System.currentTimeMillis();
+            }
+            out.writeBoolean(false);
+            out.flush();
+        } catch (IOException e) {
+            if (shard != null) {
+                retry(shard, "conexão com " + worker + " perdida - " + (e instanceof EOFException
+                        ? "encerrada pelo worker" : e.getMessage()));
+            } else if (!registered) {
+                logger.log("Conexão de " + worker + " encerrada antes do início: " + e.getMessage());
+            }
+        } finally {
+            if (registered) {
+                logger.log("Worker " + worker + " desconectado (" + connected.decrementAndGet() + " ativos)");
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    // Próximo trecho da fila; null quando todos terminaram (um trecho que falhar volta para a fila)
+    private Shard nextShard() {
+        try {
+            while (remaining.get() > 0) {
+                Shard shard = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (shard != null) return shard;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private void retry(Shard shard, String reason) {
+        if (shard.attempts <= SHARD_RETRIES) {
+            retries.incrementAndGet();
+            logger.log("Trecho " + shard.label() + " falhou (" + reason + "): nova tentativa (" +
+                    (shard.attempts + 1) + " de " + (SHARD_RETRIES + 1) + ")");
+            pending.addFirst(shard);
+        } else {
+            logger.log("Trecho " + shard.label() + " falhou (" + reason + ") após " + shard.attempts + " tentativas");
+            fail(shard);
+        }
+    }
+
+    private void fail(Shard shard) {
+        failed.add(shard.id);
+        remaining.decrementAndGet();
+    }
+
+    // Saídas parciais do trecho: quantidade, e para cada uma nome, tamanho e bytes
+    private Path receive(Shard shard, DataInputStream in) throws IOException {
+        Path folder = partsFolder.resolve(String.valueOf(shard.id));
+        if (Files.exists(folder)) Worker.deleteFolder(folder);
+        Files.createDirectories(folder);
+        int files = in.readInt();
+        byte[] buffer = new byte[64 * 1024];
+        for (int i = 0; i < files; i++) {
+            String name = in.readUTF();
+            if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+                throw new IOException("nome de saída inválido: " + name);
+            }
+            long length = in.readLong();
+            try (OutputStream file = Files.newOutputStream(folder.resolve(name))) {
+                while (length > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+                    if (n < 0) throw new IOException("conexão encerrada no meio de " + name);
+                    file.write(buffer, 0, n);
+                    length -= n;
+                }
+            }
+        }
+        return folder;
+    }
+
+    /** Para o relatório: trechos, bytes e vazão de cada worker. */
+    List<String> workerReport() {
+        Map<String, long[]> byWorker = new TreeMap<>();
+        synchronized (completions) {
+            for (Completion c : completions) {
+                long[] totals = byWorker.computeIfAbsent(c.worker, w -> new long[3]);
+                totals[0]++;
+                totals[1] += c.bytes;
+                totals[2] += c.end - c.start;
+            }
+        }
+        NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : byWorker.entrySet()) {
+            long[] totals = e.getValue();
+            lines.add("Worker " + e.getKey() + ": " + nf.format(totals[0]) + " trechos, " +
+                    formatRate(totals[1], totals[2]));
+        }
+        return lines;
+    }
+
+    /**
+     * Para o relatório: vazão agregada conforme o número de trechos em andamento ao mesmo tempo (um por
+     * worker/slot ocupado). Cada trecho concluído conta com a sua vazão média durante o tempo em que
+     * esteve em andamento; os intervalos são agrupados pelo número de trechos simultâneos, e o ganho é
+     * relativo à vazão com um só.
+     */
+    List<String> scalingReport() {
+        List<Completion> all;
+        synchronized (completions) {
+            all = new ArrayList<>(completions);
+        }
+        // Eventos ordenados pelo tempo: início (+1) e fim (-1) de cada trecho, com a vazão dele
+        List<long[]> events = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++) {
+            events.add(new long[]{all.get(i).start, 1, i});
+            events.add(new long[]{all.get(i).end, -1, i});
+        }
+        events.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        Map<Integer, double[]> byLevel = new TreeMap<>(); // simultâneos -> {segundos, bytes}
+        int running = 0;
+        double rate = 0; // bytes/s somados dos trechos em andamento
+        long previous = 0;
+        for (long[] event : events) {
+            if (running > 0 && event[0] > previous) {
+                double seconds = (event[0] - previous) / 1e9;
+                double[] level = byLevel.computeIfAbsent(running, k -> new double[2]);
+                level[0] += seconds;
+                level[1] += rate * seconds;
+            }
+            Completion c = all.get((int) event[2]);
+            double shardRate = c.end > c.start ? c.bytes / ((c.end - c.start) / 1e9) : 0;
+            running += (int) event[1];
+            rate += event[1] * shardRate;
+            previous = event[0];
+        }
+
+        List<String> lines = new ArrayList<>();
+        double single = 0;
+        for (Map.Entry<Integer, double[]> e : byLevel.entrySet()) {
+            double[] level = e.getValue();
+            if (level[0] < 0.001) continue;
+            double bytesPerSecond = level[1] / level[0];
+            if (e.getKey() == 1) single = bytesPerSecond;
+            lines.add(e.getKey() + ": " + formatBytes(Math.round(bytesPerSecond)) + "/s em " + String.format("%.1f s", level[0]) +
+                    (single > 0 && e.getKey() > 1 ? String.format(" (%.2fx)", bytesPerSecond / single) : ""));
+        }
+        return lines;
+    }
+
+    private static String formatRate(long bytes, long nanos) {
+        return formatBytes(bytes) + ", " + formatBytes(nanos > 0 ? Math.round(bytes / (nanos / 1e9)) : 0) + "/s";
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        if (bytes >= 1024L * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+
+    // Trecho concluído: quem processou, tamanho e instantes de envio e de chegada do resultado
+    private static final class Completion {
+        final String worker;
+        final long bytes;
+        final long start;
+        final long end;
+
+        Completion(String worker, long bytes, long start, long end) {
+            this.worker = worker;
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package consultaoperadora;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Divide um CSV em blocos de bytes alinhados ao fim de registro.
+ *
+ * O arquivo é lido uma única vez, em sequência, e cada bloco termina logo após um '\n' que esteja
+ * fora de aspas, de modo que campos entre aspas com quebra de linha nunca são cortados ao meio.
+ * O controle de aspas segue as mesmas regras do CSVParser do OpenCSV (aspas duplicadas e
+ * aspas precedidas do caractere de escape '\' não alternam o estado), então cada bloco pode ser parseado
+ * isoladamente e o resultado é o mesmo da leitura sequencial.
+ *
+ * O estado das aspas depende de tudo o que veio antes, então a varredura é sequencial; ela só roda num
+ * laço sobre blocos lidos do disco de uma vez, sem uma chamada de método por byte. Quando a decisão
+ * sobre um escape ou uma aspa depende do byte seguinte, ela fica pendente até ele, que pode estar no
+ * próximo bloco lido.
+ */
+class CsvChunker implements Closeable {
+
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final int READ_SIZE = 64 * 1024;
+
+    // Decisão pendente sobre o byte seguinte
+    private static final int NONE = 0;
+    private static final int AFTER_ESCAPE = 1;         // protege aspa, escape ou separador
+    private static final int AFTER_QUOTE = 2;          // alterna as aspas
+    private static final int AFTER_QUOTE_IN_FIELD = 3; // "" é aspa literal; senão alterna as aspas
+
+    private final FileInputStream in;
+    private final CsvFormat format;
+    private final byte separator;
+    private final int chunkSize;
+    private final long start;
+
+    private final byte[] buffer = new byte[READ_SIZE];
+    private int position;
+    private int limit;
+
+    // Estado do parser preservado entre blocos
+    private boolean inQuotes;
+    private boolean inField;
+    private int pending = NONE;
+    private boolean eof;
+    private byte[] chunk; // bloco em montagem pelo nextChunk
+
+    CsvChunker(File csvFile, char separator, int chunkSize) throws IOException {
+        this(csvFile, separator, chunkSize, 0);
+    }
+
+    /** @param startOffset início de um registro, fora de aspas (0 ou uma posição de retomada) */
+    CsvChunker(File csvFile, char separator, int chunkSize, long startOffset) throws IOException {
+        this(new FileInputStream(csvFile), CsvFormat.of(separator), chunkSize, startOffset);
+    }
+
+    /**
+     * Chunker que descobre o formato pelo início do arquivo ({@link CsvFormat#sniff(java.nio.channels.FileChannel)},
+     * pelo canal já aberto) antes de começar a leitura; o BOM, se houver, fica fora do primeiro bloco.
+     */
+    CsvChunker(File csvFile, int chunkSize, long startOffset) throws IOException {
+        this(new FileInputStream(csvFile), chunkSize, startOffset);
+    }
+
+    private CsvChunker(FileInputStream file, int chunkSize, long startOffset) throws IOException {
+        this(file, sniff(file), chunkSize, startOffset);
+    }
+
+    private CsvChunker(FileInputStream file, CsvFormat format, int chunkSize, long startOffset) throws IOException {
+        this.format = format;
+        this.start = startOffset == 0 ? format.bomLength : startOffset;
+        file.getChannel().position(start);
+        this.in = file;
+        this.separator = (byte) format.delimiter;
+        this.chunkSize = chunkSize;
+    }
+
+    private static CsvFormat sniff(FileInputStream file) throws IOException {
+        try {
+            return CsvFormat.sniff(file.getChannel());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    CsvFormat format() {
+        return format;
+    }
+
+    /** Posição no arquivo do primeiro bloco (depois do BOM, ou a posição de retomada). */
+    long start() {
+        return start;
+    }
+
+    /**
+     * Lê o próximo bloco. Retorna null no fim do arquivo.
+     * O array devolvido tem exatamente o tamanho do bloco.
+     */
+    byte[] nextChunk() throws IOException {
+        if (eof) return null;
+
+        chunk = new byte[chunkSize + 1024];
+        int len = (int) scan();
+        byte[] buf = chunk;
+        chunk = null;
+
+        if (len == 0) return null;
+        return len == buf.length ? buf : Arrays.copyOf(buf, len);
+    }
+
+    /**
+     * Avança um bloco sem guardar os bytes: só a fronteira interessa (ex: para dividir o arquivo em
+     * trechos). Retorna o tamanho do bloco, 0 no fim do arquivo.
+     */
+    long skipChunk() throws IOException {
+        if (eof) return 0;
+        return scan();
+    }
+
+    // Consome um bloco, guardando os bytes em chunk se ele não for null
+    private long scan() throws IOException {
+        long len = 0;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                eof = true;
+                return len;
+            }
+            byte[] bytes = buffer;
+            int from = position;
+            int i = from;
+            int end = limit;
+            boolean boundary = false;
+
+            while (i < end) {
+                byte c = bytes[i++]; // ISO-8859-1: um byte por caractere
+                if (pending != NONE) {
+                    int decision = pending;
+                    pending = NONE;
+                    if (decision == AFTER_ESCAPE) {
+                        // Protegido pelo escape: conteúdo do campo, sem efeito no estado
+                        if (c == QUOTE || c == ESCAPE || c == separator) continue;
+                    } else if (decision == AFTER_QUOTE_IN_FIELD && c == QUOTE) {
+                        // Aspas duplicadas ("") representam uma aspa literal
+                        continue;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                }
+
+                if (c == ESCAPE) {
+                    // Como no OpenCSV, o escape sempre conta como conteúdo do campo e protege o próximo
+                    // caractere se ele for uma aspa, outro escape ou o separador
+                    inField = true;
+                    pending = AFTER_ESCAPE;
+                } else if (c == QUOTE) {
+                    pending = inQuotes || inField ? AFTER_QUOTE_IN_FIELD : AFTER_QUOTE;
+                    inField = !inField;
+                } else if (c == '\n' || c == '\r') {
+                    // Fim de linha física: fora de aspas também é fim de registro
+                    if (!inQuotes) {
+                        inField = false;
+                        if (c == '\n' && len + (i - from) >= chunkSize) {
+                            boundary = true;
+                            break;
+                        }
+                    }
+                } else if (c == separator && !inQuotes) {
+                    inField = false;
+                } else {
+                    inField = true;
+                }
+            }
+
+            put(bytes, from, i - from, len);
+            len += i - from;
+            position = i;
+            if (boundary) return len;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private void put(byte[] bytes, int from, int count, long index) {
+        if (chunk == null) return;
+        if (index + count > chunk.length) {
+            chunk = Arrays.copyOf(chunk, (int) Math.max(chunk.length * 2L, index + count));
+        }
+        System.arraycopy(bytes, from, chunk, (int) index, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
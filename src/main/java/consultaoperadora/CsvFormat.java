@@ -0,0 +1,256 @@
+package consultaoperadora;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formato de um CSV de entrada (delimitador, encoding e BOM), descoberto pelos primeiros bytes do
+ * arquivo que o próprio leitor já tem em mãos: a janela mapeada, o canal aberto ou o buffer do stream.
+ * O arquivo não é aberto uma segunda vez.
+ *
+ * O delimitador é o candidato que divide as linhas da amostra ({@code -Dconsulta.sniff.kb}, padrão:
+ * 64 KB) no mesmo número de colunas: para cada candidato conta as colunas de cada registro, respeitando
+ * aspas (inclusive com quebra de linha), e pontua pelas linhas que têm o número de colunas mais comum.
+ * Um cabeçalho com menos separadores que os dados não decide sozinho.
+ *
+ * O encoding é UTF-8 se houver BOM ou se os bytes acima de 0x7F da amostra formarem sequências UTF-8
+ * válidas; caso contrário ISO-8859-1 (o padrão das exportações). As colunas são contadas só nas primeiras
+ * linhas da amostra; o resto dela só é varrido até aparecer o primeiro byte acima de 0x7F.
+ */
+final class CsvFormat {
+
+    static final char[] CANDIDATES = {',', ';', '\t'}; // Vírgula, Ponto e Vírgula, Tab
+    static final int SAMPLE_BYTES = Integer.getInteger("consulta.sniff.kb", 64) * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    // Registros analisados no máximo, mesmo que a amostra tenha mais
+    private static final int MAX_ROWS = 128;
+
+    final char delimiter;
+    final boolean utf8;
+    final int bomLength;
+    // Colunas da maioria das linhas da amostra, e quantas linhas (cabeçalho incluído) têm esse número
+    final int columns;
+    final int consistentRows;
+    final int sampledRows;
+
+    private CsvFormat(char delimiter, boolean utf8, int bomLength, int columns, int consistentRows, int sampledRows) {
+        this.delimiter = delimiter;
+        this.utf8 = utf8;
+        this.bomLength = bomLength;
+        this.columns = columns;
+        this.consistentRows = consistentRows;
+        this.sampledRows = sampledRows;
+    }
+
+    /** Formato fixo, sem detecção (delimitador informado pelo chamador, ISO-8859-1, sem BOM). */
+    static CsvFormat of(char delimiter) {
+        return new CsvFormat(delimiter, false, 0, 0, 0, 0);
+    }
+
+    Charset charset() {
+        return utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+    }
+
+    /** Para o log: "delimitador ';', UTF-8 com BOM, 8 colunas (40/41 linhas da amostra)". */
+    String describe() {
+        return "delimitador '" + (delimiter == '\t' ? "TAB" : String.valueOf(delimiter)) + "', " +
+                (utf8 ? "UTF-8" : "ISO-8859-1") + (bomLength > 0 ? " com BOM" : "") + ", " + columns +
+                " colunas (" + consistentRows + "/" + sampledRows + " linhas da amostra)";
+    }
+
+    /** Analisa o início do arquivo pelo canal já aberto, mapeando só a amostra (a posição do canal não muda). */
+    static CsvFormat sniff(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int limit = (int) Math.min(SAMPLE_BYTES, size);
+        return sniff(channel.map(FileChannel.MapMode.READ_ONLY, 0, limit), limit, limit == size);
+    }
+
+    /**
+     * Analisa os bytes [0, limit) do início do arquivo.
+     *
+     * @param eof true se {@code limit} é o fim do arquivo (senão o último registro, incompleto, é ignorado)
+     * @throws IOException se o arquivo está vazio ou é UTF-16 (BOM), que a leitura não suporta
+     */
+    static CsvFormat sniff(ByteBuffer buf, int limit, boolean eof) throws IOException {
+        int bom = 0;
+        if (limit >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) {
+            bom = 3;
+        } else if (limit >= 2 && ((buf.get(0) & 0xFF) == 0xFE && (buf.get(1) & 0xFF) == 0xFF
+                || (buf.get(0) & 0xFF) == 0xFF && (buf.get(1) & 0xFF) == 0xFE)) {
+            throw new IOException("Arquivo em UTF-16 (BOM), não suportado: converta para UTF-8 ou ISO-8859-1");
+        }
+        if (limit <= bom) {
+            throw new IOException("Arquivo vazio ou falha na leitura da primeira linha.");
+        }
+        // A varredura é feita num byte[] (a amostra é copiada se vier de um mapeamento)
+        byte[] bytes;
+        if (buf.hasArray() && buf.arrayOffset() == 0) {
+            bytes = buf.array();
+        } else {
+            bytes = new byte[limit];
+            buf.get(0, bytes);
+        }
+
+        // Uma passada só: colunas de cada registro para todos os candidatos ao mesmo tempo
+        int[][] counts = new int[CANDIDATES.length][MAX_ROWS];
+        int[] current = new int[CANDIDATES.length];
+        int rows = 0;
+        boolean inQuotes = false;
+        boolean highBytes = false;
+        boolean validUtf8 = true;
+        int pos = bom;
+        while (pos < limit && rows < MAX_ROWS) {
+            int b = bytes[pos] & 0xFF;
+            if (b >= 0x80) {
+                highBytes = true;
+                int length = utf8Length(bytes, pos, limit);
+                if (length > 0) {
+                    pos += length;
+                    continue;
+                }
+                // Sequência cortada pelo fim da amostra não conta contra o UTF-8
+                if (length == 0 && !eof) break;
+                validUtf8 = false;
+            } else if (b == ESCAPE && pos + 1 < limit && isEscapable(bytes[pos + 1])) {
+                pos++; // protege o próximo caractere (aspa, escape ou separador)
+            } else if (b == QUOTE) {
+                if (inQuotes && pos + 1 < limit && bytes[pos + 1] == QUOTE) {
+                    pos++; // aspas duplicadas
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if ((b == '\n' || b == '\r') && !inQuotes) {
+                for (int c = 0; c < CANDIDATES.length; c++) {
+                    counts[c][rows] = current[c] + 1;
+                    current[c] = 0;
+                }
+                rows++;
+                if (b == '\r' && pos + 1 < limit && bytes[pos + 1] == '\n') pos++;
+                // Linhas em branco não contam
+                while (pos + 1 < limit && (bytes[pos + 1] == '\n' || bytes[pos + 1] == '\r')) pos++;
+            } else if (!inQuotes && (b == ',' || b == ';' || b == '\t')) {
+                current[b == ',' ? 0 : b == ';' ? 1 : 2]++;
+            }
+            pos++;
+        }
+        // Último registro sem terminador: só conta se for o fim do arquivo
+        if (eof && pos >= limit && rows < MAX_ROWS && !inQuotes && pos > bom
+                && bytes[limit - 1] != '\n' && bytes[limit - 1] != '\r') {
+            for (int c = 0; c < CANDIDATES.length; c++) {
+                counts[c][rows] = current[c] + 1;
+            }
+            rows++;
+        }
+        // Linhas da amostra só com ASCII não decidem o encoding: procura o primeiro byte acima de 0x7F no resto
+        for (int i = pos; !highBytes && i < limit; i++) {
+            if (bytes[i] < 0) {
+                highBytes = true;
+                int length = utf8Length(bytes, i, limit);
+                validUtf8 = length > 0 || length == 0 && !eof;
+            }
+        }
+        if (rows == 0) {
+            // Uma linha maior que a amostra: decide só por ela
+            for (int c = 0; c < CANDIDATES.length; c++) {
+                counts[c][0] = current[c] + 1;
+            }
+            rows = 1;
+        }
+
+        // Melhor candidato: mais linhas com o número de colunas mais comum (e mais de uma coluna);
+        // empate fica com mais colunas e depois com a ordem de CANDIDATES
+        int best = 0;
+        int bestColumns = 0;
+        int bestRows = -1;
+        for (int c = 0; c < CANDIDATES.length; c++) {
+            int[] columnCounts = counts[c];
+            int mode = mode(columnCounts, rows);
+            int agreeing = 0;
+            for (int r = 0; r < rows; r++) {
+                if (columnCounts[r] == mode) agreeing++;
+            }
+            if (mode < 2) agreeing = 0;
+            if (agreeing > bestRows || agreeing == bestRows && mode > bestColumns) {
+                best = c;
+                bestColumns = mode;
+                bestRows = agreeing;
+            }
+        }
+        return new CsvFormat(CANDIDATES[best], bom > 0 || highBytes && validUtf8, bom, bestColumns,
+                bestRows, rows);
+    }
+
+    private static boolean isEscapable(byte b) {
+        if (b == QUOTE || b == ESCAPE) return true;
+        for (char candidate : CANDIDATES) {
+            if (b == candidate) return true;
+        }
+        return false;
+    }
+
+    // Valor mais frequente entre os primeiros n (os valores são pequenos: ordena uma cópia)
+    private static int mode(int[] values, int n) {
+        int[] sorted = Arrays.copyOf(values, n);
+        Arrays.sort(sorted);
+        int mode = sorted[0];
+        int modeRun = 0;
+        int run = 0;
+        for (int i = 0; i < n; i++) {
+            run = i > 0 && sorted[i] == sorted[i - 1] ? run + 1 : 1;
+            if (run > modeRun) {
+                modeRun = run;
+                mode = sorted[i];
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Tamanho da sequência UTF-8 que começa em {@code pos} (byte acima de 0x7F): 2 a 4 se for válida,
+     * 0 se for cortada por {@code limit}, -1 se for inválida.
+     */
+    static int utf8Length(ByteBuffer buf, int pos, int limit) {
+        int length = sequenceLength(buf.get(pos) & 0xFF);
+        if (length < 0) return -1;
+        int codePoint = buf.get(pos) & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            if (pos + i >= limit) return 0;
+            int next = buf.get(pos + i) & 0xFF;
+            if ((next & 0xC0) != 0x80) return -1;
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        return isValid(codePoint, length) ? length : -1;
+    }
+
+    private static int utf8Length(byte[] bytes, int pos, int limit) {
+        int length = sequenceLength(bytes[pos] & 0xFF);
+        if (length < 0) return -1;
+        int codePoint = bytes[pos] & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            if (pos + i >= limit) return 0;
+            int next = bytes[pos + i] & 0xFF;
+            if ((next & 0xC0) != 0x80) return -1;
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        return isValid(codePoint, length) ? length : -1;
+    }
+
+    private static int sequenceLength(int lead) {
+        if (lead >= 0xC2 && lead <= 0xDF) return 2;
+        if (lead >= 0xE0 && lead <= 0xEF) return 3;
+        if (lead >= 0xF0 && lead <= 0xF4) return 4;
+        return -1;
+    }
+
+    // Formas longas demais, surrogates e acima de U+10FFFF não são UTF-8 válido
+    private static boolean isValid(int codePoint, int length) {
+        int min = length == 2 ? 0x80 : length == 3 ? 0x800 : 0x10000;
+        return codePoint >= min && codePoint <= 0x10FFFF && (codePoint < 0xD800 || codePoint > 0xDFFF);
+    }
+}
@@ -0,0 +1,12 @@
+package consultaoperadora;
+
+/**
+ * Um registro do CSV de entrada, com acesso às colunas sem exigir uma String por campo.
+ */
+interface CsvRecord {
+
+    int fieldCount();
+
+    /** Conteúdo da coluna; a implementação pode reaproveitar o objeto no próximo registro. */
+    CharSequence field(int index);
+}
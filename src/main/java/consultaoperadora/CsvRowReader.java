@@ -0,0 +1,112 @@
+package consultaoperadora;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Leitura sequencial com o CSVReader do OpenCSV (uma String por campo): a classificação fica a
+ * cargo do chamador. Mantida como alternativa ao MappedCsvReader (-Dconsulta.reader=opencsv).
+ */
+class CsvRowReader implements RowReader {
+
+    private final CSVReader reader;
+    private final CsvFormat format;
+    private String[] row;
+
+    CsvRowReader(File csvFile, char delimiter) throws IOException {
+        this(new FileInputStream(csvFile), delimiter);
+    }
+
+    CsvRowReader(InputStream in, char delimiter) {
+        this.reader = newCsvReader(in, delimiter);
+        this.format = CsvFormat.of(delimiter);
+    }
+
+    /**
+     * Leitor que descobre o formato pelo início do arquivo: a amostra é lida pelo buffer do próprio
+     * stream (mark/reset) e a leitura continua do começo, já sem o BOM e no encoding detectado.
+     */
+    CsvRowReader(File csvFile) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(csvFile), CsvFormat.SAMPLE_BYTES);
+        try {
+            in.mark(CsvFormat.SAMPLE_BYTES);
+            byte[] sample = in.readNBytes(CsvFormat.SAMPLE_BYTES);
+            this.format = CsvFormat.sniff(ByteBuffer.wrap(sample), sample.length, sample.length < CsvFormat.SAMPLE_BYTES);
+            in.reset();
+            in.skipNBytes(format.bomLength);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        this.reader = newCsvReader(in, format.delimiter, format.charset());
+    }
+
+    /** CSVReader configurado como o processamento principal espera (ISO-8859-1, aspas duplas). */
+    static CSVReader newCsvReader(InputStream in, char delimiter) {
+        return newCsvReader(in, delimiter, StandardCharsets.ISO_8859_1);
+    }
+
+    static CSVReader newCsvReader(InputStream in, char delimiter, Charset charset) {
+        return new CSVReaderBuilder(new InputStreamReader(in, charset))
+                .withCSVParser(new CSVParserBuilder().withSeparator(delimiter).withQuoteChar('"').build())
+                .build();
+    }
+
+    @Override
+    public CsvFormat format() {
+        return format;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        try {
+            row = reader.readNext();
+        } catch (CsvValidationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return row != null;
+    }
+
+    /** Linha atual como array, para quem precisa guardá-la além do próximo {@link #next()}. */
+    String[] row() {
+        return row;
+    }
+
+    @Override
+    public int fieldCount() {
+        return row.length;
+    }
+
+    @Override
+    public CharSequence field(int index) {
+        return row[index];
+    }
+
+    @Override
+    public int carriers() {
+        return 0;
+    }
+
+    // O CSVReader trabalha sobre caracteres decodificados: não há como saber a posição em bytes
+    @Override
+    public long position() {
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
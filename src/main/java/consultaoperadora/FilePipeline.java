@@ -0,0 +1,418 @@
+package consultaoperadora;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Processamento de um arquivo em estágios ligados por filas limitadas, para que a leitura do disco,
+ * a classificação (libphonenumber) e a gravação das saídas aconteçam ao mesmo tempo:
+ *
+ * <pre>
+ * leitura (1 thread) → classificação (pool de CPU) → despacho (thread do processFile) → escrita (1 thread por operadora)
+ * </pre>
+ *
+ * A leitura copia as linhas completas com CNPJ válido para lotes ({@link RecordBatch}) e manda cada
+ * lote para o pool de CPU do {@link Scheduler}, onde as operadoras de cada linha são calculadas; leitura e
+ * escrita rodam no executor de E/S. O despacho pega os lotes na ordem do arquivo,
+ * aplica a deduplicação e entrega o lote aos escritores das operadoras presentes nele. A ordem das
+ * linhas nas saídas é a mesma do processamento sequencial.
+ *
+ * Os lotes vêm de um pool fixo e só voltam para ele depois de gravados: quando um estágio fica para
+ * trás, os anteriores esperam por um lote livre (backpressure) e a memória não cresce com o arquivo.
+ * De cada estágio são medidos o tempo ocupado e a profundidade média da fila de entrada, para
+ * mostrar qual deles limita a vazão.
+ */
+final class FilePipeline {
+
+    /** Grava um checkpoint; chamado no despacho, com todas as linhas até {@code position} já gravadas. */
+    interface Checkpointer {
+        void save(long position, int total, int uniqueCount) throws IOException;
+    }
+
+    // Marcadores que passam pelas filas junto com os lotes
+    private static final RecordBatch END = new RecordBatch(0, 0);
+    private static final RecordBatch BARRIER = new RecordBatch(0, 0);
+
+    private final String state;
+    private final RowReader reader;
+    private final CarrierWriters writers;
+    private final ToIntFunction<CharSequence> classifier;
+    private final int batches;
+    private final Metrics.FileStats stats;
+    private final AsyncLogger logger;
+
+    private final BlockingQueue<RecordBatch> free;
+    // Lotes enviados ao pool de CPU que ainda não começaram a ser classificados
+    private final AtomicInteger awaitingClassification = new AtomicInteger();
+    private final BlockingQueue<RecordBatch> inOrder;
+    private final List<BlockingQueue<RecordBatch>> toWrite = new ArrayList<>();
+    private final Semaphore writersIdle = new Semaphore(0);
+
+    private final Stage reading = new Stage("leitura", 1);
+    private final Stage classifying;
+    private final Stage dispatching = new Stage("despacho", 1);
+    private final Stage writing = new Stage("escrita", Operadora.values().length);
+
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private CountDownLatch stopped;
+    private Thread dispatcher;
+
+    private int total;
+    private int uniqueCount;
+    private long elapsedNanos;
+
+    /**
+     * @param classifier aplicado ao campo de telefones das linhas ainda não classificadas; devolve a
+     *                   máscara das operadoras da linha ({@link Operadora#bit()})
+     * @param batchRows  linhas por lote
+     * @param batches    lotes em circulação (limitam a memória do arquivo)
+     * @param stats      métricas do arquivo, atualizadas a cada lote
+     */
+    FilePipeline(String state, RowReader reader, CarrierWriters writers, ToIntFunction<CharSequence> classifier,
+                 int batchRows, int batches, int fields, Metrics.FileStats stats, AsyncLogger logger) {
+        this.state = state;
+        this.reader = reader;
+        this.writers = writers;
+        this.classifier = classifier;
+        this.batches = batches;
+        this.stats = stats;
+        this.logger = logger;
+        this.classifying = new Stage("classificação", Scheduler.cpuThreads());
+
+        free = new ArrayBlockingQueue<>(batches);
+        for (int i = 0; i < batches; i++) {
+            free.add(new RecordBatch(batchRows, fields));
+        }
+        // Os marcadores também passam pelas filas, por isso a folga na capacidade
+        inOrder = new ArrayBlockingQueue<>(batches + 1);
+        for (int i = 0; i < Operadora.values().length; i++) {
+            toWrite.add(new ArrayBlockingQueue<>(batches + 1));
+        }
+    }
+
+    /**
+     * Processa o arquivo até o fim. As linhas são aceitas ou descartadas por {@code accept} (CNPJ da
+     * linha, chamado na ordem do arquivo); a cada {@code checkpointRows} linhas lidas é chamado o
+     * {@code checkpointer} (null desativa).
+     *
+     * @param startTotal       linhas já lidas antes do início (retomada de um checkpoint)
+     * @param startUniqueCount linhas já gravadas antes do início
+     */
+    void run(int startTotal, int startUniqueCount, LongPredicate accept,
+             Checkpointer checkpointer, int checkpointRows) throws IOException {
+        long start = System.nanoTime();
+        total = startTotal;
+        uniqueCount = startUniqueCount;
+        dispatcher = Thread.currentThread();
+        stopped = new CountDownLatch(1 + toWrite.size());
+
+        try {
+            ExecutorService io = Scheduler.io();
+            tasks.add(io.submit(() -> stage(this::read)));
+            for (Operadora operadora : Operadora.values()) {
+                tasks.add(io.submit(() -> stage(() -> write(operadora))));
+            }
+
+            dispatch(accept, checkpointer, checkpointRows);
+            stopped.await();
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            // Interrompido por um estágio que falhou (e aí vale o erro dele), ou erro no próprio despacho
+            failure.compareAndSet(null, e);
+        } finally {
+            if (failure.get() != null) {
+                for (Future<?> task : tasks) {
+                    task.cancel(true);
+                }
+                // O reader e os writers são fechados pelo processFile: espera os estágios pararem antes
+                awaitStopped();
+                Thread.interrupted();
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException) throw (IOException) error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof InterruptedException) throw new IOException("Processamento interrompido", error);
+        if (error != null) throw new IOException(error.getMessage(), error);
+    }
+
+    /** Linhas lidas (inclusive as descartadas). */
+    int total() {
+        return total;
+    }
+
+    /** Linhas aceitas e gravadas. */
+    int uniqueCount() {
+        return uniqueCount;
+    }
+
+    // Estágio 1: lê as linhas, descarta as incompletas e os CNPJs inválidos e monta os lotes
+    private void read() throws IOException, InterruptedException {
+        int rows = total;
+        RecordBatch batch = takeFree(System.nanoTime());
+        long busy = System.nanoTime();
+
+        while (reader.next()) {
+            rows++;
+            // A unificação do ETL original gera muitas colunas, mas só as 6 primeiras são usadas
+            if (reader.fieldCount() < 6) continue;
+
+            // Bloco de DEBUG para as primeiras linhas
+            if (rows <= 5) {
+                logger.log(String.format("Linha %d (Sucesso Extração): CNPJ='%s', Telefones='%s'",
+                        rows, reader.field(0), reader.field(5)));
+            }
+
+            // Validação de CNPJ: deve ser 14 dígitos (convertido direto para long, sem trim/regex)
+            long cnpj = CnpjSet.parse(reader.field(0));
+            if (cnpj < 0) continue;
+
+            // No modo paralelo as operadoras já vêm calculadas pelo pool
+            batch.add(reader, cnpj, reader.carriers());
+            if (batch.isFull()) {
+                batch.endPosition = reader.position();
+                batch.endTotal = rows;
+                reading.busy(busy);
+                publish(batch);
+                batch = takeFree(System.nanoTime());
+                busy = System.nanoTime();
+            }
+        }
+        // O último lote pode estar vazio: ele leva o total e a posição do fim do arquivo
+        batch.endPosition = reader.position();
+        batch.endTotal = rows;
+        reading.busy(busy);
+        publish(batch);
+
+        inOrder.put(END);
+    }
+
+    private RecordBatch takeFree(long since) throws InterruptedException {
+        RecordBatch batch = free.take();
+        reading.blocked(since);
+        batch.clear();
+        return batch;
+    }
+
+    private void publish(RecordBatch batch) throws InterruptedException {
+        inOrder.put(batch);
+        classifying.sample(awaitingClassification.getAndIncrement());
+        Scheduler.cpu().execute(() -> classify(batch));
+    }
+
+    // Estágio 2 (pool de CPU, um lote por tarefa): calcula as operadoras das linhas que ainda não têm
+    private void classify(RecordBatch batch) {
+        awaitingClassification.decrementAndGet();
+        long busy = System.nanoTime();
+        try {
+            RecordBatch.Row row = new RecordBatch.Row(batch.fields);
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.carriers[i] == 0) {
+                    batch.carriers[i] = classifier.applyAsInt(row.select(batch, i).field(5));
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+            return;
+        }
+        classifying.busy(busy);
+        batch.classified.release();
+    }
+
+    // Estágio 3 (thread do processFile): deduplicação na ordem do arquivo e entrega aos escritores
+    private void dispatch(LongPredicate accept, Checkpointer checkpointer, int checkpointRows)
+            throws IOException, InterruptedException {
+        while (true) {
+            dispatching.sample(inOrder);
+            RecordBatch batch = inOrder.take();
+            if (batch == END) break;
+            batch.classified.acquire();
+
+            long busy = System.nanoTime();
+            int present = 0;
+            int accepted = 0;
+            for (int i = 0; i < batch.size; i++) {
+                if (accept.test(batch.cnpjs[i])) {
+                    accepted++;
+                    present |= batch.carriers[i];
+                } else {
+                    batch.carriers[i] = 0; // descartada: nenhum escritor grava a linha
+                }
+            }
+
+            uniqueCount += accepted;
+            Metrics.DEDUP_CHECKED.add(batch.size);
+            Metrics.DEDUP_DISCARDED.add(batch.size - accepted);
+
+            // Depois de entregue aos escritores o lote pode voltar ao pool e ser reaproveitado
+            int previousTotal = total;
+            total = batch.endTotal;
+            long position = batch.endPosition;
+            logger.progress(state, total - previousTotal);
+            stats.progress(total, position);
+
+            batch.pendingWriters.set(Integer.bitCount(present));
+            if (present == 0) {
+                free.put(batch);
+            } else {
+                for (int ordinal = 0; ordinal < toWrite.size(); ordinal++) {
+                    if ((present & 1 << ordinal) != 0) toWrite.get(ordinal).put(batch);
+                }
+            }
+            dispatching.busy(busy);
+
+            if (checkpointer != null && total / checkpointRows > previousTotal / checkpointRows) {
+                // Espera os escritores gravarem tudo o que já foi entregue antes de medir as saídas
+                for (BlockingQueue<RecordBatch> queue : toWrite) {
+                    queue.put(BARRIER);
+                }
+                writersIdle.acquire(toWrite.size());
+                checkpointer.save(position, total, uniqueCount);
+            }
+        }
+
+        for (BlockingQueue<RecordBatch> queue : toWrite) {
+            queue.put(END);
+        }
+    }
+
+    // Estágio 4: uma thread por operadora, cada uma gravando só o seu arquivo
+    private void write(Operadora operadora) throws IOException, InterruptedException {
+        BlockingQueue<RecordBatch> queue = toWrite.get(operadora.ordinal());
+        int bit = operadora.bit();
+        RecordBatch.Row row = null;
+        while (true) {
+            writing.sample(queue);
+            RecordBatch batch = queue.take();
+            if (batch == END) return;
+            if (batch == BARRIER) {
+                writersIdle.release();
+                continue;
+            }
+            long busy = System.nanoTime();
+            if (row == null) row = new RecordBatch.Row(batch.fields);
+            for (int i = 0; i < batch.size; i++) {
+                if ((batch.carriers[i] & bit) != 0) {
+                    writers.write(operadora, row.select(batch, i));
+                }
+            }
+            writing.busy(busy);
+            if (batch.pendingWriters.decrementAndGet() == 0) {
+                free.put(batch);
+            }
+        }
+    }
+
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private void stage(StageBody body) {
+        try {
+            body.run();
+        } catch (InterruptedException e) {
+            // Cancelado porque outro estágio falhou
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            // Desbloqueia o despacho, que cancela os outros estágios
+            dispatcher.interrupt();
+        }
+    }
+
+    private void awaitStopped() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                stopped.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Tempo ocupado de cada estágio (em relação ao tempo total do arquivo, somando as threads do
+     * estágio) e profundidade média da fila de entrada. O estágio mais ocupado, com a fila de
+     * entrada cheia, é o gargalo.
+     */
+    String report() {
+        return "Pipeline " + state + " - " + reading.describe(elapsedNanos, 0) +
+                " (aguardando lote livre " + percent(reading.blockedNanos.sum(), elapsedNanos) + ")" +
+                " | " + classifying.describe(elapsedNanos, batches) +
+                " | " + dispatching.describe(elapsedNanos, batches) +
+                " | " + writing.describe(elapsedNanos, batches);
+    }
+
+    private static String percent(long part, long whole) {
+        return String.format(Locale.ROOT, "%.0f%%", whole > 0 ? part * 100.0 / whole : 0.0);
+    }
+
+    private static final class Stage {
+        final String name;
+        final int threads;
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+        final LongAdder depthSum = new LongAdder();
+        final LongAdder samples = new LongAdder();
+        final AtomicInteger maxDepth = new AtomicInteger();
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        void busy(long since) {
+            busyNanos.add(System.nanoTime() - since);
+        }
+
+        void blocked(long since) {
+            blockedNanos.add(System.nanoTime() - since);
+        }
+
+        // Profundidade da fila de entrada no momento em que o estágio vai buscar o próximo lote
+        void sample(BlockingQueue<RecordBatch> queue) {
+            sample(queue.size());
+        }
+
+        void sample(int depth) {
+            depthSum.add(depth);
+            samples.increment();
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        String describe(long elapsedNanos, int capacity) {
+            String text = name + (threads > 1 ? " x" + threads : "") + ": ocupado " +
+                    percent(busyNanos.sum(), elapsedNanos * threads);
+            long n = samples.sum();
+            if (capacity > 0 && n > 0) {
+                text += String.format(Locale.ROOT, ", fila %.1f/%d (máx. %d)",
+                        depthSum.sum() / (double) n, capacity, maxDepth.get());
+            }
+            return text;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package consultaoperadora;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parser de registros CSV direto sobre bytes ISO-8859-1 (um byte = um caractere) ou, quando o
+ * {@link CsvFormat} detecta, UTF-8 (decodificado só nas colunas copiadas).
+ *
+ * Reproduz o comportamento do CSVReader + CSVParser do OpenCSV com as opções usadas no projeto
+ * (aspas '"', escape '\', sem strictQuotes, ignoreLeadingWhiteSpace): linhas físicas terminadas por
+ * \n, \r ou \r\n, campos entre aspas com quebra de linha, aspas duplicadas, escape e o caso da aspa no
+ * meio do campo. Assim o resultado é o mesmo da leitura pelo OpenCSV, sem criar uma String por campo.
+ *
+ * Apenas as primeiras {@code keptFields} colunas têm o conteúdo copiado (para um buffer de caracteres
+ * reutilizado); as demais só são contadas. As colunas ficam acessíveis como CharSequence até o
+ * próximo registro.
+ */
+class Latin1CsvParser implements CsvRecord {
+
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+    // Mesmo limite do CSVParser do OpenCSV para o caso da aspa no meio do campo
+    private static final int BEGINNING_OF_LINE = 3;
+
+    private final char separator;
+    private final int keptFields;
+    private final boolean utf8;
+
+    private char[] chars = new char[1024];
+    private int length;
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    private final Field[] views;
+    private int fieldCount;
+    private int currentFieldStart;
+    private boolean inField;
+
+    Latin1CsvParser(char separator, int keptFields) {
+        this(separator, keptFields, false);
+    }
+
+    /** @param utf8 bytes acima de 0x7F formam sequências UTF-8 (separador, aspas e quebras são ASCII nos dois) */
+    Latin1CsvParser(char separator, int keptFields, boolean utf8) {
+        this.separator = separator;
+        this.keptFields = keptFields;
+        this.utf8 = utf8;
+        this.fieldStart = new int[keptFields];
+        this.fieldEnd = new int[keptFields];
+        this.views = new Field[keptFields];
+        for (int i = 0; i < keptFields; i++) {
+            views[i] = new Field(i);
+        }
+    }
+
+    /**
+     * Lê um registro a partir de {@code pos}.
+     *
+     * @param eof true se {@code limit} é o fim do arquivo (a última linha pode não ter terminador)
+     * @return a posição logo após o registro; -1 se o registro não termina antes de {@code limit}
+     *         (é preciso mais dados); ou {@code pos} se não há mais nada a ler
+     * @throws IOException se o arquivo termina com aspas abertas (o OpenCSV também falha nesse caso)
+     */
+    int parse(ByteBuffer buf, int pos, int limit, boolean eof) throws IOException {
+        if (pos >= limit) return pos;
+
+        length = 0;
+        fieldCount = 0;
+        currentFieldStart = 0;
+        inField = false;
+        boolean pending = false; // campo entre aspas continuando de uma linha anterior
+
+        int lineStart = pos;
+        while (true) {
+            // Localiza o fim da linha física
+            int lineEnd = lineStart;
+            while (lineEnd < limit) {
+                byte b = buf.get(lineEnd);
+                if (b == '\n' || b == '\r') break;
+                lineEnd++;
+            }
+            int next;
+            if (lineEnd < limit) {
+                if (buf.get(lineEnd) == '\r') {
+                    if (lineEnd + 1 < limit) {
+                        next = buf.get(lineEnd + 1) == '\n' ? lineEnd + 2 : lineEnd + 1;
+                    } else if (eof) {
+                        next = lineEnd + 1;
+                    } else {
+                        return -1; // não dá para saber se vem um \n
+                    }
+                } else {
+                    next = lineEnd + 1;
+                }
+            } else if (eof) {
+                next = lineEnd;
+            } else {
+                return -1;
+            }
+
+            boolean inQuotes = parseLine(buf, lineStart, lineEnd, pending);
+            if (!inQuotes) {
+                inField = false;
+                endField();
+                return next;
+            }
+
+            // Campo entre aspas continua na próxima linha: o OpenCSV junta as linhas com '\n'
+            append('\n');
+            pending = true;
+            if (next >= limit && eof) {
+                throw new IOException("Aspas não fechadas no fim do arquivo");
+            }
+            lineStart = next;
+        }
+    }
+
+    // Uma linha física, como CSVParser.parseLine; retorna se terminou dentro de aspas
+    private boolean parseLine(ByteBuffer buf, int start, int end, boolean pending) {
+        boolean inQuotes = pending;
+        int i = start;
+        while (i < end) {
+            char c = (char) (buf.get(i++) & 0xFF);
+            if (c == ESCAPE) {
+                inField = true;
+                // Escape protege aspa, escape ou separador; um escape solto é descartado
+                if (i < end) {
+                    char n = (char) (buf.get(i) & 0xFF);
+                    if (n == QUOTE || n == ESCAPE || n == separator) {
+                        append(n);
+                        i++;
+                    }
+                }
+            } else if (c == QUOTE) {
+                if ((inQuotes || inField) && i < end && buf.get(i) == QUOTE) {
+                    // Aspas duplicadas viram uma aspa literal
+                    append(QUOTE);
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                    // Aspa no meio do campo (a,bc"d"ef,g): mantida como caractere
+                    int rel = i - start;
+                    if (rel > BEGINNING_OF_LINE
+                            && (char) (buf.get(i - 2) & 0xFF) != separator
+                            && i < end
+                            && (char) (buf.get(i) & 0xFF) != separator) {
+                        if (length > currentFieldStart && isWhitespace(currentFieldStart, length)) {
+                            length = currentFieldStart;
+                        } else {
+                            append(QUOTE);
+                        }
+                    }
+                }
+                inField = !inField;
+            } else if (c == separator && !inQuotes) {
+                endField();
+                inField = false;
+            } else if (utf8 && c >= 0x80) {
+                i = appendUtf8(buf, i - 1, end);
+                inField = true;
+            } else {
+                append(c);
+                inField = true;
+            }
+        }
+        return inQuotes;
+    }
+
+    // Decodifica a sequência UTF-8 em pos; uma sequência inválida vira U+FFFD, como no InputStreamReader
+    private int appendUtf8(ByteBuffer buf, int pos, int end) {
+        int length = CsvFormat.utf8Length(buf, pos, end);
+        if (length <= 0) {
+            append('\uFFFD');
+            return pos + 1;
+        }
+        int codePoint = buf.get(pos) & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            codePoint = (codePoint << 6) | (buf.get(pos + i) & 0x3F);
+        }
+        if (codePoint >= 0x10000) {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+        } else {
+            append((char) codePoint);
+        }
+        return pos + length;
+    }
+
+    private void endField() {
+        if (fieldCount < keptFields) {
+            fieldStart[fieldCount] = currentFieldStart;
+            fieldEnd[fieldCount] = length;
+        } else {
+            // Colunas além das mantidas não precisam do conteúdo
+            length = currentFieldStart;
+        }
+        fieldCount++;
+        currentFieldStart = length;
+    }
+
+    private void append(char c) {
+        if (length == chars.length) {
+            char[] bigger = new char[chars.length * 2];
+            System.arraycopy(chars, 0, bigger, 0, length);
+            chars = bigger;
+        }
+        chars[length++] = c;
+    }
+
+    // Mesmo critério do StringUtils.isWhitespace usado pelo OpenCSV
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(chars[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public CharSequence field(int index) {
+        if (index >= keptFields || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("coluna " + index + " não disponível");
+        }
+        return views[index];
+    }
+
+    // Visão de uma coluna sobre o buffer de caracteres, válida até o próximo parse
+    private final class Field implements CharSequence {
+        private final int index;
+
+        Field(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return fieldEnd[index] - fieldStart[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            return chars[fieldStart[index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, fieldStart[index], length());
+        }
+    }
+}
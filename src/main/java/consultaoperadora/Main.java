@@ -0,0 +1,1197 @@
+package consultaoperadora;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberType;
+import com.google.i18n.phonenumbers.PhoneNumberToCarrierMapper;
+import com.google.i18n.phonenumbers.NumberParseException;
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.NumberFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Main {
+
+    // ** ATENÇÃO: VERIFIQUE E AJUSTE ESTES CAMINHOS ** (ou use -Dconsulta.inputFolder / -Dconsulta.outputFolder)
+    private static final String INPUT_FOLDER =
+            System.getProperty("consulta.inputFolder", "E:\\Projetos JAVA\\CnpjDownloader\\cnpj_data\\export");
+    private static final String OUTPUT_FOLDER =
+            System.getProperty("consulta.outputFolder", "E:\\Projetos JAVA\\CnpjDownloader\\arquivos_finalizados");
+    private static final String LOG_FILE = OUTPUT_FOLDER + File.separator + "processamento.log";
+
+    // Cabeçalho fixo com as 6 colunas originais
+    private static final String[] HEADER = {"cnpj_completo", "razao_social", "endereco_completo", "email", "ano_abertura", "telefones"};
+    // Arquivos a partir deste tamanho são lidos em blocos e classificados em paralelo (0 desativa)
+    private static final long PARALLEL_FILE_MIN_BYTES = Long.getLong("consulta.parallel.minBytes", 64L * 1024 * 1024);
+    private static final int PARALLEL_CHUNK_BYTES = Integer.getInteger("consulta.parallel.chunkBytes", 1024 * 1024);
+    // Tabela de CNPJs da deduplicação fora do heap (ByteBuffer direto)
+    private static final boolean DEDUP_OFF_HEAP = Boolean.getBoolean("consulta.dedup.offHeap");
+    // Deduplicação entre todos os arquivos da execução, e não só dentro de cada arquivo
+    private static final boolean GLOBAL_DEDUP = Boolean.getBoolean("consulta.dedup.global");
+    // Leitor sequencial: "mapped" (memory-mapping, sem String por campo) ou "opencsv" (CSVReader)
+    private static final String READER_MODE = System.getProperty("consulta.reader", "mapped");
+    // Reprocessa só o que mudou desde a última execução (manifesto na pasta de saída)
+    private static final boolean INCREMENTAL = Boolean.getBoolean("consulta.incremental");
+    // Grava um checkpoint a cada N linhas para retomar o arquivo depois de uma queda (0 desativa)
+    private static final int CHECKPOINT_ROWS = Integer.getInteger("consulta.checkpoint.rows", 1_000_000);
+    // Estágios de cada arquivo (leitura -> classificação -> escrita): linhas por lote e lotes em
+    // circulação (limitam a memória por arquivo)
+    private static final int PIPELINE_BATCH_ROWS = Integer.getInteger("consulta.pipeline.batchRows", 1024);
+    private static final int PIPELINE_BATCHES = Integer.getInteger("consulta.pipeline.batches", 16);
+    // Arquivos processados ao mesmo tempo: limitados pela soma das estimativas de memória de cada um
+    // (padrão: 60% do heap máximo), e não por um número fixo de threads
+    private static final long MEMORY_BUDGET_BYTES = Long.getLong("consulta.memoryBudgetMb",
+            Runtime.getRuntime().maxMemory() * 6 / 10 / (1024 * 1024)) * 1024 * 1024;
+    // Grava também "{UF} - colunar.bin", a saída colunar binária (ColumnarFile)
+    private static final boolean COLUMNAR_OUTPUT = Boolean.getBoolean("consulta.output.columnar");
+    // Telefones classificados por linha: "first" (só o primeiro) ou "all" (todos; a linha vai para as
+    // operadoras encontradas conforme a prioridade "all", "mobile" ou "fixed", ver PhonePriority)
+    private static final boolean ALL_PHONES = "all".equalsIgnoreCase(System.getProperty("consulta.phones", "first"));
+    private static final PhonePriority PHONE_PRIORITY =
+            PhonePriority.fromName(System.getProperty("consulta.phones.priority", "all"));
+    // No modo "all", números examinados por linha no máximo (limita o custo de campos muito longos)
+    private static final int MAX_PHONES_PER_ROW = Math.max(1, Integer.getInteger("consulta.phones.max", 8));
+    // Opções que mudam o resultado: manifesto e checkpoints de outra configuração não valem
+    private static final String RESULT_CONFIG = "globalDedup=" + GLOBAL_DEDUP + ",columnar=" + COLUMNAR_OUTPUT +
+            (ALL_PHONES ? ",phones=all/" + PHONE_PRIORITY + "/" + MAX_PHONES_PER_ROW : "");
+    // Métricas durante a execução: MBean JMX (padrão) e /metrics no formato do Prometheus em
+    // 127.0.0.1 na porta informada (0 desativa)
+    private static final boolean METRICS_JMX = !"false".equals(System.getProperty("consulta.metrics.jmx"));
+    private static final int METRICS_PORT = Integer.getInteger("consulta.metrics.port", 0);
+    // Execução: "local" (padrão), "coordinator" (divide a entrada em trechos, distribui aos workers e junta
+    // as saídas) ou "worker" (processa trechos recebidos de um coordenador), ver Coordinator
+    private static final String MODE = System.getProperty("consulta.mode", "local");
+    // Coordenador: endereço e porta em que ouve (só 127.0.0.1 por padrão; 0.0.0.0 aceita outras máquinas),
+    // tamanho dos trechos dos arquivos grandes e quantos workers ele mesmo inicia nesta máquina
+    private static final String COORDINATOR_BIND = System.getProperty("consulta.coordinator.bind", "127.0.0.1");
+    private static final int COORDINATOR_PORT = Integer.getInteger("consulta.coordinator.port", 7070);
+    private static final long SHARD_BYTES = Long.getLong("consulta.shard.mb", 256) * 1024 * 1024;
+    private static final int LOCAL_WORKERS = Integer.getInteger("consulta.workers.local", 0);
+    // Worker: "host:porta" do coordenador e trechos processados ao mesmo tempo
+    private static final String COORDINATOR_ADDRESS = System.getProperty("consulta.coordinator", "127.0.0.1:7070");
+    private static final int WORKER_SLOTS = Math.max(1, Integer.getInteger("consulta.worker.slots", 1));
+
+    private static final AtomicLong totalRecordsProcessed = new AtomicLong(0);
+    private static final AtomicInteger totalCsvFilesGenerated = new AtomicInteger(0);
+    private static final AtomicInteger successfulFiles = new AtomicInteger(0);
+    private static final AtomicInteger failedFiles = new AtomicInteger(0);
+    private static final AtomicLong peakDedupBytes = new AtomicLong(0);
+    private static final AtomicLong crossFileDuplicates = new AtomicLong(0);
+
+    // UFs processadas: regiões e/ou siglas separadas por vírgula (ex: "NORDESTE", "SUDESTE,SUL", "BRASIL")
+    private static final StateFilter STATE_FILTER = StateFilter.of(System.getProperty("consulta.states", "NORDESTE"));
+
+    // Log e progresso assíncronos: os workers só enfileiram, a gravação fica numa thread à parte
+    private static AsyncLogger logger;
+    // Preenchido antes do processamento quando a deduplicação global está ativa; depois só é lido
+    private static CnpjIndex globalCnpjs;
+    // Marcado por identifyCarrierFallback: a consulta em andamento nesta thread caiu no fallback por prefixo
+    private static final ThreadLocal<boolean[]> FELL_BACK = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    public static void main(String[] args) {
+        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+        try {
+            Files.createDirectories(Paths.get(OUTPUT_FOLDER));
+            // O worker só escreve no console (os workers locais do coordenador têm o console num worker-N.log)
+            logger = new AsyncLogger(System.out, "worker".equals(MODE)
+                    ? Writer.nullWriter() : new BufferedWriter(new FileWriter(LOG_FILE, true)));
+        } catch (IOException e) {
+            System.err.println("Erro ao preparar log: " + e.getMessage());
+            return;
+        }
+
+        log("=== INÍCIO DO PROCESSAMENTO === " + dtf.format(LocalDateTime.now()));
+
+        if ("worker".equals(MODE)) {
+            runWorker();
+            logger.close();
+            return;
+        }
+
+        File inputDir = new File(INPUT_FOLDER);
+        if (!inputDir.exists()) {
+            log("Diretório de entrada não encontrado: " + INPUT_FOLDER);
+            return;
+        }
+
+        // Arquivos CSV com uma UF selecionada no nome, delimitada por '_' (Ex: al_ativos.csv ou ativos_al.csv).
+        // Tamanho e data de modificação vêm junto com a listagem
+        List<StateFilter.InputFile> inputs;
+        try {
+            inputs = STATE_FILTER.scan(inputDir.toPath());
+        } catch (IOException e) {
+            log("Erro ao listar o diretório de entrada " + INPUT_FOLDER + " - " + e.getMessage());
+            return;
+        }
+
+        if (inputs.isEmpty()) {
+            log("Nenhum arquivo CSV das UFs " + STATE_FILTER.describe() + " encontrado com os padrões de nome esperados.");
+            return;
+        }
+
+        log("Arquivos encontrados para " + STATE_FILTER.describe() + ": " + inputs.size());
+
+        MetricsServer metrics = startMetrics();
+
+        // No coordenador a tabela não é usada: abri-la antes de iniciar os workers locais evita que eles
+        // criem o arquivo ao mesmo tempo
+        boolean persistentCarrierCache = openCarrierCache();
+
+        if ("coordinator".equals(MODE)) {
+            runCoordinator(inputs);
+            if (metrics != null) metrics.close();
+            logger.close();
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        ExecutorService executor = Scheduler.io();
+        MemoryBudget memory = new MemoryBudget(MEMORY_BUDGET_BYTES);
+        List<Future<Void>> futures = new ArrayList<>();
+        log("Execução: " + Scheduler.describe() + ", orçamento de memória de " + formatBytes(memory.budgetBytes()));
+
+        // Deduplicação global: o rank de cada arquivo é a sua posição na ordem alfabética dos nomes
+        // (ex: al_ativos.csv fica com o CNPJ antes de al_baixados.csv), independente da ordem das threads
+        if (GLOBAL_DEDUP) {
+            inputs.sort(Comparator.comparing(f -> f.name().toLowerCase()));
+        }
+        File[] csvFiles = new File[inputs.size()];
+        for (int i = 0; i < csvFiles.length; i++) csvFiles[i] = inputs.get(i).file;
+
+        // Modo incremental: arquivos sem alteração desde o último manifesto são ignorados
+        Path manifestPath = Paths.get(OUTPUT_FOLDER, Manifest.FILE_NAME);
+        Manifest manifest = new Manifest(RESULT_CONFIG);
+        Map<String, Manifest.Entry> fingerprints = new HashMap<>();
+        Set<File> toProcess = INCREMENTAL
+                ? selectChangedFiles(inputs, manifestPath, manifest, fingerprints)
+                : new HashSet<>(Arrays.asList(csvFiles));
+        Map<String, List<String>> outputsByFile = new ConcurrentHashMap<>();
+        if (INCREMENTAL && !toProcess.isEmpty()) {
+            // Os arquivos a refazer saem do manifesto já: se a execução cair no meio, as saídas
+            // incompletas não passam por atualizadas na próxima
+            try {
+                manifest.save(manifestPath);
+            } catch (IOException e) {
+                log("Erro ao gravar o manifesto " + manifestPath + " - " + e.getMessage());
+            }
+        }
+
+        if (GLOBAL_DEDUP && !toProcess.isEmpty()) {
+            globalCnpjs = buildGlobalIndex(executor, csvFiles);
+            if (globalCnpjs == null) {
+                // Com o índice incompleto um CNPJ poderia ficar em mais de um arquivo ou em nenhum
+                log("Execução cancelada: a deduplicação global precisa dos CNPJs de todos os arquivos");
+                if (metrics != null) metrics.close();
+                logger.close();
+                return;
+            }
+        }
+
+        // Os arquivos de uma UF gravam nas mesmas saídas: ficam numa tarefa só, um depois do outro, em ordem
+        // alfabética (a mesma em todas as execuções, para o checkpoint)
+        Map<String, List<Integer>> byState = new LinkedHashMap<>();
+        for (int i = 0; i < csvFiles.length; i++) {
+            if (!toProcess.contains(csvFiles[i])) continue;
+            byState.computeIfAbsent(inputs.get(i).state, state -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> group : byState.values()) {
+            group.sort(Comparator.comparing((Integer i) -> inputs.get(i).name().toLowerCase()));
+        }
+
+        // Maior UF primeiro: a mais demorada começa logo em vez de ficar sozinha no fim da execução.
+        // Cada UF só começa quando a estimativa de memória do seu maior arquivo cabe no orçamento
+        List<List<Integer>> largestFirst = new ArrayList<>(byState.values());
+        largestFirst.sort(Comparator.comparingLong((List<Integer> group) -> {
+            long size = 0;
+            for (int i : group) size += inputs.get(i).size;
+            return size;
+        }).reversed());
+
+        for (List<Integer> group : largestFirst) {
+            String state = inputs.get(group.get(0)).state;
+            List<File> files = new ArrayList<>();
+            int[] ranks = new int[group.size()];
+            long largest = 0;
+            for (int k = 0; k < group.size(); k++) {
+                files.add(csvFiles[group.get(k)]);
+                ranks[k] = group.get(k);
+                largest = Math.max(largest, inputs.get(group.get(k)).size);
+            }
+            long reserved;
+            try {
+                reserved = memory.acquire(estimateMemory(largest));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log("Execução interrompida antes de iniciar: " + state);
+                break;
+            }
+            futures.add(executor.submit(() -> {
+                try {
+                    for (Map.Entry<File, List<String>> e : processState(state, files, ranks).entrySet()) {
+                        outputsByFile.put(e.getKey().getName(), e.getValue());
+                    }
+                } catch (Exception e) {
+                    log("Erro não capturado ao processar a UF " + state + " - " + e.getMessage());
+                    failedFiles.incrementAndGet();
+                } finally {
+                    memory.release(reserved);
+                }
+                return null;
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                // Erro já logado na thread worker
+            }
+        }
+
+        if (INCREMENTAL) {
+            // Arquivos que falharam ficam fora do manifesto e são reprocessados na próxima execução
+            for (Map.Entry<String, List<String>> e : outputsByFile.entrySet()) {
+                manifest.put(fingerprints.get(e.getKey()).withOutputs(e.getValue()));
+            }
+            try {
+                manifest.save(manifestPath);
+            } catch (IOException e) {
+                log("Erro ao gravar o manifesto " + manifestPath + " - " + e.getMessage());
+            }
+        }
+
+        long duration = (System.nanoTime() - startTime) / 1_000_000_000;
+        NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+
+        log("\n=== RELATÓRIO FINAL ===");
+        log("Tempo total: " + formatDuration(duration));
+        log("Arquivos processados com sucesso: " + successfulFiles.get() + "/" + toProcess.size());
+        if (INCREMENTAL) {
+            log("Arquivos sem alteração (ignorados): " + (csvFiles.length - toProcess.size()));
+        }
+        log("Registros processados: " + nf.format(totalRecordsProcessed.get()));
+        log("Arquivos CSV gerados: " + totalCsvFilesGenerated.get());
+        log("Taxa de sucesso: " + String.format("%.1f", toProcess.isEmpty() ? 100.0 : (successfulFiles.get() * 100.0) / toProcess.size()) + "%");
+        long cacheHits = CarrierCache.hits();
+        long cacheLookups = cacheHits + CarrierCache.misses();
+        if (globalCnpjs != null) {
+            log("Deduplicação global: " + nf.format(globalCnpjs.size()) + " CNPJs distintos (índice de " +
+                    formatBytes(globalCnpjs.footprintBytes()) + "), " + nf.format(crossFileDuplicates.get()) +
+                    " descartados por já pertencerem a outro arquivo");
+        }
+        log("Memória estimada: pico de " + formatBytes(memory.peakBytes()) + " reservados de " +
+                formatBytes(memory.budgetBytes()) + " do orçamento");
+        log("Maior tabela de deduplicação: " + formatBytes(peakDedupBytes.get()) + (DEDUP_OFF_HEAP ? " (off-heap)" : " (heap)"));
+        log("Cache de operadoras: " + nf.format(cacheHits) + " acertos / " + nf.format(cacheLookups) + " consultas (" +
+                String.format("%.1f", cacheLookups > 0 ? (cacheHits * 100.0) / cacheLookups : 0.0) + "%)");
+        if (persistentCarrierCache) {
+            // Sem o arquivo, cada faixa que ele resolveu seria uma consulta a mais ao libphonenumber
+            long warmHits = CarrierCache.warmHits();
+            long lookups = CarrierCache.stored();
+            long meanNanos = Metrics.LIBPHONENUMBER.meanNanos();
+            CarrierCache.flush(meanNanos);
+            if (meanNanos == 0) meanNanos = CarrierCache.lookupNanos();
+            log("Cache persistente: " + nf.format(CarrierCache.preloaded()) + " faixas de execuções anteriores, " +
+                    nf.format(lookups) + " novas; consultas ao libphonenumber: " + nf.format(lookups) + " (seriam " +
+                    nf.format(lookups + warmHits) + " sem o cache persistente" +
+                    (meanNanos > 0 ? String.format(", ~%.1f s a mais", warmHits * meanNanos / 1e9) : "") +
+                    "); acertos sem ele: " + String.format("%.1f", cacheLookups > 0
+                    ? ((cacheHits - warmHits) * 100.0) / cacheLookups : 0.0) + "%");
+        }
+        log("Deduplicação: " + nf.format(Metrics.DEDUP_DISCARDED.sum()) + " de " + nf.format(Metrics.DEDUP_CHECKED.sum()) +
+                " linhas descartadas (" + String.format("%.1f", Metrics.dedupDiscardRatio() * 100) + "%)");
+        log("Fallback por prefixo: " + nf.format(Metrics.FALLBACKS.sum()) + " de " + nf.format(Metrics.PHONE_NUMBERS.sum()) +
+                " números (" + String.format("%.2f", Metrics.fallbackRatio() * 100) + "%)");
+        log("Latência getOperadora: " + Metrics.GET_OPERADORA.describe());
+        log("Latência libphonenumber: " + Metrics.LIBPHONENUMBER.describe());
+        log("Latência fallback: " + Metrics.FALLBACK.describe());
+        log("=== FIM DO PROCESSAMENTO ===");
+
+        if (metrics != null) metrics.close();
+
+        logger.close();
+    }
+    
+    // Registra os contadores do relatório final como métricas e abre o JMX / HTTP; sem métricas se falhar
+    private static MetricsServer startMetrics() {
+        Metrics.gauge("consulta_records_processed_total", "Registros únicos gravados", totalRecordsProcessed::get);
+        Metrics.gauge("consulta_files_succeeded_total", "Arquivos processados com sucesso", successfulFiles::get);
+        Metrics.gauge("consulta_files_failed_total", "Arquivos com erro", failedFiles::get);
+        Metrics.gauge("consulta_output_files_total", "Arquivos CSV de saída gerados", totalCsvFilesGenerated::get);
+        Metrics.gauge("consulta_carrier_cache_hits_total", "Acertos do cache de operadoras", CarrierCache::hits);
+        Metrics.gauge("consulta_carrier_cache_misses_total", "Faixas consultadas no libphonenumber", CarrierCache::misses);
+        Metrics.gauge("consulta_carrier_cache_warm_hits_total", "Faixas resolvidas pelo cache persistente", CarrierCache::warmHits);
+        try {
+            MetricsServer server = MetricsServer.start(METRICS_JMX, METRICS_PORT);
+            if (server.url() != null) log("Métricas em " + server.url());
+            return server;
+        } catch (IOException e) {
+            log("Métricas indisponíveis: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Tabela de operadoras por faixa persistida na pasta de saída: reaproveita o que execuções anteriores resolveram
+    private static boolean openCarrierCache() {
+        try {
+            String carrierCache = CarrierCache.open(Paths.get(OUTPUT_FOLDER));
+            if (carrierCache != null) {
+                log("Tabela de operadoras por faixa " + carrierCache + ": " +
+                        NumberFormat.getNumberInstance(new Locale("pt", "BR")).format(CarrierCache.preloaded()) + " faixas");
+                return true;
+            }
+        } catch (IOException e) {
+            log("Cache de operadoras só em memória: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Modo worker: processa os trechos recebidos do coordenador até ele encerrar. Cada trecho é lido da
+     * pasta de entrada deste processo e gravado numa pasta temporária (ver {@link Worker}).
+     */
+    private static void runWorker() {
+        MetricsServer metrics = startMetrics();
+        boolean persistentCarrierCache = openCarrierCache();
+        log("Worker: coordenador em " + COORDINATOR_ADDRESS + ", " + WORKER_SLOTS + " trecho(s) por vez, " +
+                Scheduler.describe());
+        try {
+            int processed = new Worker(COORDINATOR_ADDRESS, RESULT_CONFIG, Main::processShard, logger).run(WORKER_SLOTS);
+            log("=== FIM DO WORKER === " + processed + " trechos processados");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log("Worker interrompido");
+        } catch (IllegalArgumentException e) {
+            log("Worker não iniciado: " + e.getMessage());
+        }
+        if (persistentCarrierCache) CarrierCache.flush(Metrics.LIBPHONENUMBER.meanNanos());
+        if (metrics != null) metrics.close();
+    }
+
+    /** Modo worker: processa um trecho de um arquivo da pasta de entrada, gravando as saídas em {@code folder}. */
+    static List<String> processShard(Shard shard, Path folder) {
+        File csvFile = new File(INPUT_FOLDER, shard.fileName);
+        if (csvFile.length() != shard.fileSize) {
+            log("Arquivo " + csvFile + " não confere com o do coordenador (" + csvFile.length() + " bytes em vez de " +
+                    shard.fileSize + "): trecho " + shard.label() + " recusado");
+            return null;
+        }
+        return processState(shard.state, List.of(csvFile), new int[]{-1}, shard, folder.toString()).get(csvFile);
+    }
+
+    /**
+     * Modo coordenador: divide os arquivos em trechos, espera os workers processarem todos e junta as
+     * saídas parciais nos "{UF} - {OPERADORA}.csv" finais, com a deduplicação entre trechos (e entre
+     * arquivos, com a deduplicação global) resolvida na junção ({@link ShardMerger}).
+     *
+     * Checkpoints e modo incremental são da execução local: aqui um trecho que falha é refeito inteiro
+     * por outro worker. Vários arquivos da mesma UF são juntados, em ordem alfabética, nos mesmos
+     * arquivos de saída.
+     */
+    private static void runCoordinator(List<StateFilter.InputFile> inputs) {
+        long startTime = System.nanoTime();
+        NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+        if (COLUMNAR_OUTPUT) {
+            log("Saída colunar não é suportada no modo coordenador: desative consulta.output.columnar");
+            return;
+        }
+        if (INCREMENTAL) {
+            log("Modo incremental ignorado no modo coordenador: todos os arquivos serão processados");
+        }
+
+        // Ordem alfabética: a ordem da junção (e o rank da deduplicação global, como na execução local)
+        inputs.sort(Comparator.comparing(f -> f.name().toLowerCase()));
+        // O CSVReader do OpenCSV não começa no meio do arquivo: com ele cada arquivo é um trecho só
+        long shardBytes = "opencsv".equalsIgnoreCase(READER_MODE) ? Long.MAX_VALUE : SHARD_BYTES;
+        Map<StateFilter.InputFile, List<Shard>> shardsByFile = new LinkedHashMap<>();
+        List<Shard> shards = new ArrayList<>();
+        long splitStart = System.nanoTime();
+        for (StateFilter.InputFile input : inputs) {
+            try {
+                List<Shard> fileShards = Shard.split(input, shardBytes, shards.size());
+                shardsByFile.put(input, fileShards);
+                shards.addAll(fileShards);
+            } catch (IOException e) {
+                log("Erro ao dividir " + input.name() + " em trechos - " + e.getMessage());
+                failedFiles.incrementAndGet();
+            }
+        }
+        log("Divisão em trechos de até " + formatBytes(SHARD_BYTES) + ": " + shards.size() + " trechos de " +
+                shardsByFile.size() + " arquivos em " + String.format("%.1f s", (System.nanoTime() - splitStart) / 1e9));
+
+        // Maior trecho primeiro, como os arquivos na execução local
+        List<Shard> dispatchOrder = new ArrayList<>(shards);
+        dispatchOrder.sort(Comparator.comparingLong(Shard::length).reversed());
+        Path partsFolder = Paths.get(OUTPUT_FOLDER, "trechos");
+        Coordinator coordinator = new Coordinator(dispatchOrder, RESULT_CONFIG, partsFolder, logger);
+        try {
+            log("Coordenador ouvindo em " + coordinator.listen(COORDINATOR_BIND, COORDINATOR_PORT) +
+                    (LOCAL_WORKERS > 0 ? ", iniciando " + LOCAL_WORKERS + " workers locais" : ", aguardando workers"));
+            coordinator.startLocalWorkers(LOCAL_WORKERS, Paths.get(OUTPUT_FOLDER));
+            coordinator.await();
+        } catch (IOException e) {
+            log("Erro no coordenador: " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log("Coordenador interrompido");
+            return;
+        }
+
+        // Junção na ordem alfabética dos arquivos; um arquivo com trecho perdido fica de fora inteiro
+        long mergeStart = System.nanoTime();
+        int filesGenerated = 0;
+        try (ShardMerger merger = new ShardMerger(Paths.get(OUTPUT_FOLDER), GLOBAL_DEDUP, DEDUP_OFF_HEAP)) {
+            for (Map.Entry<StateFilter.InputFile, List<Shard>> entry : shardsByFile.entrySet()) {
+                String name = entry.getKey().name();
+                String state = entry.getKey().state;
+                List<Path> parts = new ArrayList<>();
+                for (Shard shard : entry.getValue()) {
+                    Path part = coordinator.result(shard);
+                    if (part == null) break;
+                    parts.add(part);
+                }
+                if (parts.size() < entry.getValue().size()) {
+                    log("✗ " + name + ": trechos sem resultado, arquivo não gravado");
+                    failedFiles.incrementAndGet();
+                    continue;
+                }
+                try {
+                    ShardMerger.Result result = merger.merge(state, parts);
+                    log("Distribuição " + name + " - CLARO: " + result.counts[Operadora.CLARO.ordinal()] +
+                            ", VIVO: " + result.counts[Operadora.VIVO.ordinal()] +
+                            ", TIM: " + result.counts[Operadora.TIM.ordinal()] +
+                            ", OI: " + result.counts[Operadora.OI.ordinal()] +
+                            ", FIXO: " + result.counts[Operadora.FIXO.ordinal()] +
+                            ", SEM OPERADORA: " + result.counts[Operadora.SEM_OPERADORA.ordinal()]);
+                    log("✓ " + state + " - " + nf.format(result.uniqueCount) + " registros únicos de " + name + " (" +
+                            parts.size() + " trechos, " + nf.format(result.discarded) + " linhas repetidas entre trechos" +
+                            (GLOBAL_DEDUP ? " ou arquivos" : "") + ")");
+                    totalRecordsProcessed.addAndGet(result.uniqueCount);
+                    peakDedupBytes.accumulateAndGet(result.dedupBytes, Math::max);
+                    successfulFiles.incrementAndGet();
+                } catch (IOException e) {
+                    log("Erro ao juntar os trechos de " + name + " - " + e.getMessage());
+                    failedFiles.incrementAndGet();
+                }
+            }
+            filesGenerated = merger.filesCreated();
+        } catch (IOException e) {
+            log("Erro ao fechar os arquivos de saída - " + e.getMessage());
+        }
+        totalCsvFilesGenerated.addAndGet(filesGenerated);
+        for (Shard shard : shards) {
+            Path part = coordinator.result(shard);
+            if (part != null) Worker.deleteFolder(part);
+        }
+        try {
+            Files.deleteIfExists(partsFolder);
+        } catch (IOException e) {
+            // Sobrou algum trecho de um worker desconectado: fica para a próxima execução
+        }
+
+        long duration = (System.nanoTime() - startTime) / 1_000_000_000;
+        log("\n=== RELATÓRIO FINAL ===");
+        log("Tempo total: " + formatDuration(duration) + " (junção: " +
+                String.format("%.1f s", (System.nanoTime() - mergeStart) / 1e9) + ")");
+        log("Arquivos processados com sucesso: " + successfulFiles.get() + "/" + inputs.size());
+        log("Registros processados: " + nf.format(totalRecordsProcessed.get()));
+        log("Arquivos CSV gerados: " + totalCsvFilesGenerated.get());
+        log("Taxa de sucesso: " + String.format("%.1f", (successfulFiles.get() * 100.0) / inputs.size()) + "%");
+        log("Trechos: " + coordinator.shardCount() + ", novas tentativas: " + coordinator.retries() +
+                ", perdidos: " + coordinator.failedShards());
+        log("Maior tabela de deduplicação: " + formatBytes(peakDedupBytes.get()) + (DEDUP_OFF_HEAP ? " (off-heap)" : " (heap)"));
+        for (String line : coordinator.workerReport()) {
+            log(line);
+        }
+        log("Vazão por trechos em andamento ao mesmo tempo:");
+        for (String line : coordinator.scalingReport()) {
+            log("  " + line);
+        }
+        log("=== FIM DO PROCESSAMENTO ===");
+    }
+
+    /**
+     * Modo incremental: compara os arquivos de entrada com o manifesto da execução anterior e devolve
+     * os que precisam ser reprocessados.
+     *
+     * Um arquivo não mudou se tamanho e data de modificação são os mesmos do manifesto (o conteúdo só é
+     * lido quando a data muda, e aí vale o XXH64) e as saídas que ele gerou ainda existem. Como vários
+     * arquivos da mesma UF gravam os mesmos "{UF} - {OPERADORA}.csv", a unidade de reprocessamento é a UF:
+     * se um arquivo dela mudou (ou sumiu), todos os arquivos da UF são refeitos e as saídas antigas são
+     * apagadas antes. Com deduplicação global qualquer mudança refaz tudo, porque um arquivo afeta os outros.
+     *
+     * Os arquivos que não mudaram já entram em {@code next}; os demais ficam em {@code fingerprints}
+     * para serem registrados depois de processados. Arquivos de UFs fora do -Dconsulta.states não são
+     * listados: seguem no manifesto como estavam, e as saídas deles ficam intactas.
+     */
+    private static Set<File> selectChangedFiles(List<StateFilter.InputFile> inputs, Path manifestPath, Manifest next,
+                                                Map<String, Manifest.Entry> fingerprints) {
+        Manifest previous;
+        try {
+            previous = Manifest.load(manifestPath);
+        } catch (IOException | RuntimeException e) {
+            log("Manifesto ilegível (" + e.getMessage() + "): todos os arquivos serão reprocessados");
+            previous = new Manifest(null);
+        }
+        boolean sameConfig = next.config().equals(previous.config());
+        if (!sameConfig && previous.config() != null) {
+            log("Configuração mudou desde a última execução (" + previous.config() + "): todos os arquivos serão reprocessados");
+        }
+
+        long start = System.nanoTime();
+        Set<String> dirtyStates = new HashSet<>();
+        Set<String> currentNames = new HashSet<>();
+        for (StateFilter.InputFile input : inputs) {
+            String name = input.name();
+            currentNames.add(name);
+            Manifest.Entry old = sameConfig ? previous.get(name) : null;
+            long size = input.size;
+            long lastModified = input.lastModified;
+
+            long hash;
+            boolean unchanged;
+            if (old != null && old.size == size && old.lastModified == lastModified) {
+                hash = old.hash;
+                unchanged = true;
+            } else {
+                try {
+                    hash = XxHash64.hashFile(input.file.toPath());
+                } catch (IOException e) {
+                    log("Erro ao calcular o hash de " + name + " - " + e.getMessage());
+                    hash = 0;
+                }
+                // Só a data mudou (ex: arquivo copiado de novo com o mesmo conteúdo)
+                unchanged = old != null && old.size == size && old.hash == hash;
+            }
+            if (unchanged && !outputsExist(old)) {
+                unchanged = false;
+            }
+
+            fingerprints.put(name, new Manifest.Entry(name, size, lastModified, hash, Collections.emptyList()));
+            if (!unchanged) {
+                dirtyStates.add(input.state);
+            }
+        }
+
+        // Arquivos de UFs não selecionadas nesta execução: nem verificados nem apagados
+        Set<String> unselected = new HashSet<>();
+        for (Manifest.Entry old : previous.entries()) {
+            if (STATE_FILTER.match(old.name) == null) {
+                unselected.add(old.name);
+                if (sameConfig) next.put(old);
+            }
+        }
+
+        // Arquivo que sumiu da entrada: as saídas da UF dele precisam ser refeitas sem ele
+        for (Manifest.Entry old : previous.entries()) {
+            if (!currentNames.contains(old.name) && !unselected.contains(old.name)) {
+                dirtyStates.add(extractStateFromFileName(old.name));
+            }
+        }
+        if (GLOBAL_DEDUP && !dirtyStates.isEmpty()) {
+            for (StateFilter.InputFile input : inputs) {
+                dirtyStates.add(input.state);
+            }
+        }
+
+        // Saídas antigas das UFs refeitas: uma operadora que deixou de aparecer não pode sobrar.
+        // UFs com checkpoint pendente ficam como estão, para a execução anterior ser retomada
+        Set<String> resumableStates = new HashSet<>();
+        for (StateFilter.InputFile input : inputs) {
+            if (Files.exists(Checkpoint.pathFor(OUTPUT_FOLDER, input.file))) {
+                resumableStates.add(input.state);
+            }
+        }
+        for (Manifest.Entry old : previous.entries()) {
+            String state = extractStateFromFileName(old.name);
+            if (unselected.contains(old.name) || !dirtyStates.contains(state) || resumableStates.contains(state)) continue;
+            for (String output : old.outputs) {
+                try {
+                    Files.deleteIfExists(Paths.get(OUTPUT_FOLDER, output));
+                } catch (IOException e) {
+                    log("Erro ao apagar saída antiga " + output + " - " + e.getMessage());
+                }
+            }
+        }
+
+        Set<File> changed = new HashSet<>();
+        for (StateFilter.InputFile input : inputs) {
+            String name = input.name();
+            if (dirtyStates.contains(input.state)) {
+                changed.add(input.file);
+            } else {
+                next.put(fingerprints.get(name).withOutputs(previous.get(name).outputs));
+            }
+        }
+
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        log("Modo incremental: " + changed.size() + " arquivo(s) a reprocessar, " +
+                (inputs.size() - changed.size()) + " sem alteração (verificação em " + duration + " ms)");
+        return changed;
+    }
+
+    private static boolean outputsExist(Manifest.Entry entry) {
+        for (String output : entry.outputs) {
+            if (!Files.exists(Paths.get(OUTPUT_FOLDER, output))) return false;
+        }
+        return true;
+    }
+
+    /** Define o log usado pelo processFile quando ele roda fora do main (benchmarks). */
+    static void useLogger(AsyncLogger asyncLogger) {
+        logger = asyncLogger;
+    }
+
+    /**
+     * Estimativa da memória usada por um arquivo em processamento, a partir do tamanho dele: a tabela
+     * de deduplicação (uma linha a cada ~64 bytes de entrada, 60% de ocupação, e a tabela antiga junto
+     * com a nova durante o rehash), os lotes do pipeline, os buffers de saída e, na leitura paralela,
+     * a janela de blocos. Com a saída colunar, soma um grupo em memória por operadora.
+     */
+    static long estimateMemory(long size) {
+        long rows = size / 64 + 1;
+        long dedup = Math.max(1L << 16, Long.highestOneBit(rows * 100 / 60 + 1) * 2) * Long.BYTES * 3 / 2;
+        long batches = (long) PIPELINE_BATCHES * PIPELINE_BATCH_ROWS * 512;
+        long outputs = Operadora.values().length * 256L * 1024;
+        long parallel = PARALLEL_FILE_MIN_BYTES > 0 && size >= PARALLEL_FILE_MIN_BYTES
+                ? (Scheduler.cpuThreads() + 1L) * PARALLEL_CHUNK_BYTES * 4
+                : 0;
+        long columnar = COLUMNAR_OUTPUT ? Operadora.values().length * ColumnarWriter.GROUP_ROWS * 512L : 0;
+        return dedup + batches + outputs + parallel + columnar;
+    }
+
+    // Arquivos grandes são divididos em blocos e parseados/classificados em paralelo;
+    // os menores seguem no leitor sequencial (memory-mapped por padrão)
+    // A leitura começa em startOffset (0, ou a posição de um checkpoint)
+    // O leitor descobre o formato (delimitador, encoding, BOM) pelos primeiros bytes que ele mesmo lê
+    private static RowReader openRowReader(File csvFile, long startOffset) throws IOException {
+        if (PARALLEL_FILE_MIN_BYTES > 0 && csvFile.length() >= PARALLEL_FILE_MIN_BYTES) {
+            log("Leitura paralela em blocos de " + PARALLEL_CHUNK_BYTES / 1024 + " KB: " + csvFile.getName());
+            return new ParallelCsvReader(csvFile, HEADER.length, PARALLEL_CHUNK_BYTES, Main::classifyRow, startOffset);
+        }
+        return openSequentialReader(csvFile, startOffset);
+    }
+
+    private static RowReader openSequentialReader(File csvFile, long startOffset) throws IOException {
+        if ("opencsv".equalsIgnoreCase(READER_MODE)) {
+            // O CSVReader não informa a posição: sem checkpoint (startOffset é sempre 0 aqui)
+            return new CsvRowReader(csvFile);
+        }
+        return new MappedCsvReader(csvFile, HEADER.length, startOffset);
+    }
+
+    /**
+     * Primeira fase da deduplicação global: lê só a coluna de CNPJ de todos os arquivos em paralelo
+     * e registra, para cada CNPJ, o menor rank de arquivo em que ele aparece.
+     *
+     * @return null se algum arquivo não pôde ser lido até o fim
+     */
+    private static CnpjIndex buildGlobalIndex(ExecutorService executor, File[] csvFiles) {
+        long start = System.nanoTime();
+        CnpjIndex index = new CnpjIndex();
+        List<Future<Void>> futures = new ArrayList<>();
+        boolean complete = true;
+
+        for (int i = 0; i < csvFiles.length; i++) {
+            File csvFile = csvFiles[i];
+            int rank = i;
+            futures.add(executor.submit(() -> {
+                try (RowReader reader = openSequentialReader(csvFile, 0)) {
+                    reader.next(); // cabeçalho
+                    while (reader.next()) {
+                        if (reader.fieldCount() < 6) continue;
+                        long cnpj = CnpjSet.parse(reader.field(0));
+                        if (cnpj >= 0) index.offer(cnpj, rank);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log("Erro ao indexar CNPJs de " + csvFile.getName() + " - " + e.getMessage());
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                // Erro já logado na thread worker
+                complete = false;
+            }
+        }
+        if (!complete) return null;
+
+        long duration = (System.nanoTime() - start) / 1_000_000_000;
+        log("Índice global de CNPJs: " + index.size() + " CNPJs distintos em " + formatDuration(duration));
+        return index;
+    }
+
+    /**
+     * Processa um CSV de entrada e grava os arquivos "{UF} - {OPERADORA}.csv".
+     *
+     * @return os nomes dos arquivos de saída gerados, ou null se o processamento falhou
+     */
+    static List<String> processFile(File csvFile, int rank) {
+        return processState(extractStateFromFileName(csvFile.getName()), List.of(csvFile), new int[]{rank}).get(csvFile);
+    }
+
+    /**
+     * Processa os CSVs de entrada de uma UF, um depois do outro, gravando todos nos mesmos
+     * "{UF} - {OPERADORA}.csv" (dois arquivos da mesma UF ao mesmo tempo misturariam as linhas nas
+     * saídas). A deduplicação continua por arquivo de entrada.
+     *
+     * A cada CHECKPOINT_ROWS linhas grava um {@link Checkpoint} do arquivo em andamento, com o tamanho
+     * das saídas até ali e o tamanho e a data dos arquivos da UF anteriores a ele. Se houver um válido de
+     * uma execução interrompida (com esses arquivos iguais), eles já estão nas saídas e o processamento
+     * continua a partir dele. Um arquivo que falha não deixa
+     * linhas nas saídas: elas voltam ao tamanho de antes dele.
+     *
+     * @param csvFiles os arquivos da UF, sempre na mesma ordem (a do checkpoint)
+     * @param ranks    rank de cada arquivo na deduplicação global
+     * @return os nomes dos arquivos de saída da UF, para cada arquivo processado com sucesso
+     */
+    static Map<File, List<String>> processState(String state, List<File> csvFiles, int[] ranks) {
+        return processState(state, csvFiles, ranks, null, OUTPUT_FOLDER);
+    }
+
+    /**
+     * Como {@link #processState(String, List, int[])}, mas só com as linhas do trecho {@code shard} (se não
+     * for null), gravando em {@code outputFolder}. Trechos não têm checkpoint: quem refaz um trecho é o coordenador.
+     */
+    private static Map<File, List<String>> processState(String state, List<File> csvFiles, int[] ranks,
+                                                        Shard shard, String outputFolder) {
+        long start = System.nanoTime();
+        NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+
+        // 1. Checkpoint de uma execução interrompida: o do último arquivo da UF que tiver um válido
+        // (o leitor OpenCSV não sabe a posição, não tem checkpoint)
+        boolean checkpoints = shard == null && CHECKPOINT_ROWS > 0 && !"opencsv".equalsIgnoreCase(READER_MODE);
+        Checkpoint resumeFrom = null;
+        int first = 0;
+        for (int i = csvFiles.size() - 1; checkpoints && i >= 0 && resumeFrom == null; i--) {
+            resumeFrom = loadCheckpoint(state, csvFiles.get(i), csvFiles.subList(0, i));
+            if (resumeFrom != null) first = i;
+        }
+        List<File> done = new ArrayList<>(csvFiles.subList(0, first));
+        if (first > 0) {
+            log("Retomando " + state + ": " + first + " arquivo(s) já gravados na execução anterior");
+        }
+
+        // 2. Processamento principal (as saídas são gravadas em streaming, linha a linha)
+        logger.progressStart(state);
+        // O try interno fecha as saídas (descarrega os buffers) antes das contagens finais
+        CarrierWriters writers = new CarrierWriters(state, outputFolder, HEADER, COLUMNAR_OUTPUT);
+        try {
+            try (writers) {
+                if (resumeFrom != null) {
+                    writers.resume(resumeFrom.outputSizes, resumeFrom.counts);
+                }
+                for (int i = first; i < csvFiles.size(); i++) {
+                    File csvFile = csvFiles.get(i);
+                    // Saídas antes do arquivo: se ele falhar no meio, as linhas que já gravou são desfeitas
+                    long[] sizes = writers.checkpoint();
+                    int[] counts = writers.counts();
+                    if (processFile(csvFile, ranks[i], shard, writers, i == first ? resumeFrom : null, checkpoints,
+                            csvFiles.subList(0, i))) {
+                        done.add(csvFile);
+                        continue;
+                    }
+                    if (i == first && resumeFrom != null) {
+                        // As linhas dele da execução anterior não têm como ser desfeitas: o checkpoint fica, a
+                        // próxima execução retoma dele (cortando o resto) e os arquivos seguintes ficam para ela
+                        log("Arquivos de " + state + " depois de " + csvFile.getName() + " ficam para a próxima execução");
+                        failedFiles.addAndGet(csvFiles.size() - i - 1);
+                        break;
+                    }
+                    writers.rollback(sizes, counts);
+                    // Os checkpoints dele apontam para linhas que acabaram de ser desfeitas
+                    if (checkpoints) {
+                        Files.deleteIfExists(Checkpoint.pathFor(OUTPUT_FOLDER, csvFile));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log("Erro ao gravar as saídas de " + state + " - " + e.getMessage());
+            failedFiles.addAndGet(done.size());
+            return Collections.emptyMap();
+        } finally {
+            // O progresso das linhas já foi somado lote a lote pelo pipeline
+            logger.progressDone(state, 0);
+        }
+
+        int filesWritten = writers.filesWritten();
+        totalCsvFilesGenerated.addAndGet(filesWritten);
+
+        // Log das quantidades por operadora (no modo "all" uma linha pode contar em mais de uma)
+        log("Distribuição " + state + " - CLARO: " + writers.count(Operadora.CLARO) +
+            ", VIVO: " + writers.count(Operadora.VIVO) +
+            ", TIM: " + writers.count(Operadora.TIM) +
+            ", OI: " + writers.count(Operadora.OI) +
+            ", FIXO: " + writers.count(Operadora.FIXO) +
+            ", SEM OPERADORA: " + writers.count(Operadora.SEM_OPERADORA));
+
+        // Os checkpoints só saem depois das saídas fechadas
+        Map<File, List<String>> outputs = new LinkedHashMap<>();
+        List<String> names = writers.fileNames();
+        for (File csvFile : done) {
+            outputs.put(csvFile, names);
+            successfulFiles.incrementAndGet();
+            if (checkpoints) {
+                try {
+                    Files.deleteIfExists(Checkpoint.pathFor(OUTPUT_FOLDER, csvFile));
+                } catch (IOException e) {
+                    log("Erro ao apagar o checkpoint de " + csvFile.getName() + " - " + e.getMessage());
+                }
+            }
+        }
+
+        long duration = (System.nanoTime() - start) / 1_000_000_000;
+        log("✓ " + state + " - " + done.size() + "/" + csvFiles.size() + " arquivo(s) de entrada, " + filesWritten +
+                " arquivos gerados em " + formatDuration(duration));
+        return outputs;
+    }
+
+    // Checkpoint válido do arquivo, ou null se não houver ou se não servir mais
+    private static Checkpoint loadCheckpoint(String state, File csvFile, List<File> preceding) {
+        try {
+            Checkpoint checkpoint = Checkpoint.load(Checkpoint.pathFor(OUTPUT_FOLDER, csvFile), csvFile, preceding,
+                    RESULT_CONFIG, DEDUP_OFF_HEAP);
+            if (checkpoint != null && !CarrierWriters.canResume(state, OUTPUT_FOLDER, checkpoint.outputSizes)) {
+                // Saídas apagadas ou menores que o registrado: o checkpoint não serve mais
+                log("Checkpoint de " + csvFile.getName() + " não confere com as saídas: ignorado");
+                return null;
+            }
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            log("Checkpoint ilegível de " + csvFile.getName() + " (" + e.getMessage() + "): ignorado");
+            return null;
+        }
+    }
+
+    /**
+     * Lê um arquivo de entrada (ou o trecho {@code shard} dele) e grava as linhas nas saídas da UF,
+     * continuando de {@code resumeFrom} se não for null (as saídas já foram retomadas nele).
+     *
+     * @param preceding os arquivos da UF gravados antes deste nas mesmas saídas, conferidos na retomada
+     * @return false se o processamento falhou
+     */
+    private static boolean processFile(File csvFile, int rank, Shard shard, CarrierWriters writers,
+                                       Checkpoint resumeFrom, boolean checkpoints, List<File> preceding) {
+        long start = System.nanoTime();
+        String state = shard != null ? shard.state : extractStateFromFileName(csvFile.getName());
+        String label = shard != null ? shard.label() : csvFile.getName();
+        NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+        Metrics.FileStats stats = shard != null
+                ? Metrics.file(label, shard.start, shard.length())
+                : Metrics.file(csvFile.getName(), csvFile.length());
+
+        log("Processando: " + label);
+
+        Path checkpointPath = Checkpoint.pathFor(OUTPUT_FOLDER, csvFile);
+        CnpjSet processedCnpjs = resumeFrom != null ? resumeFrom.cnpjs : new CnpjSet(DEDUP_OFF_HEAP);
+
+        int total = resumeFrom != null ? resumeFrom.total : 0;
+        int uniqueCount = resumeFrom != null ? resumeFrom.uniqueCount : 0;
+
+        try (RowReader reader = shard != null
+                ? new RangeRowReader(openRowReader(csvFile, shard.start), shard.end)
+                : openRowReader(csvFile, resumeFrom != null ? resumeFrom.inputOffset : 0)) {
+
+            CsvFormat format = reader.format();
+            if (format.columns < 6) {
+                // Não é erro: as linhas com menos de 6 colunas só são descartadas
+                log("Atenção: " + csvFile.getName() + " - " + format.describe() + ". Usando o melhor palpite.");
+            } else {
+                log("Formato de " + csvFile.getName() + ": " + format.describe());
+            }
+
+            if (resumeFrom != null) {
+                log("Retomando " + csvFile.getName() + " do checkpoint: linha " + nf.format(total) +
+                        ", byte " + nf.format(resumeFrom.inputOffset));
+            } else if (shard == null || shard.start == 0) {
+                // Pula o cabeçalho original (só o primeiro trecho tem)
+                reader.next();
+            }
+            
+            log("--- DEBUG DE EXTRAÇÃO ---");
+
+            // Leitura, classificação e gravação em estágios paralelos; a deduplicação roda na ordem do arquivo
+            FilePipeline pipeline = new FilePipeline(state, reader, writers, Main::classifyRow,
+                    PIPELINE_BATCH_ROWS, PIPELINE_BATCHES, HEADER.length, stats, logger);
+            FilePipeline.Checkpointer checkpointer = !checkpoints ? null : (position, rows, unique) ->
+                    new Checkpoint(position, rows, unique, writers.counts(), writers.checkpoint(), processedCnpjs)
+                            .save(checkpointPath, csvFile, preceding, RESULT_CONFIG);
+            try {
+                pipeline.run(total, uniqueCount, cnpj -> {
+                    // Validação de Duplicidade
+                    if (!processedCnpjs.add(cnpj)) {
+                        return false; // Descarta CNPJ duplicado
+                    }
+                    // Deduplicação global: o CNPJ fica só no arquivo de menor rank em que aparece
+                    // (-1: fora do índice, a linha fica)
+                    int owner = globalCnpjs != null ? globalCnpjs.rankOf(cnpj) : -1;
+                    if (owner >= 0 && owner != rank) {
+                        crossFileDuplicates.incrementAndGet();
+                        return false;
+                    }
+                    return true;
+                }, checkpointer, CHECKPOINT_ROWS);
+            } finally {
+                total = pipeline.total();
+                uniqueCount = pipeline.uniqueCount();
+            }
+            log(pipeline.report());
+            log("--- FIM DO DEBUG ---"); 
+
+            log("Deduplicação - " + nf.format(processedCnpjs.size()) + " CNPJs, tabela de " +
+                formatBytes(processedCnpjs.footprintBytes()) + (processedCnpjs.isOffHeap() ? " (off-heap)" : " (heap)"));
+            peakDedupBytes.accumulateAndGet(processedCnpjs.footprintBytes(), Math::max);
+
+            totalRecordsProcessed.addAndGet(uniqueCount);
+
+            stats.finish();
+            long duration = (System.nanoTime() - start) / 1_000_000_000;
+            log("✓ " + label + " - " + nf.format(uniqueCount) + " registros únicos processados de um total de " + nf.format(total) + " em " + formatDuration(duration) +
+                " - " + nf.format(Math.round(stats.rowsPerSecond())) + " linhas/s, " + formatBytes(Math.round(stats.bytesPerSecond())) + "/s");
+            return true;
+
+        } catch (IOException e) {
+            log("Erro ao processar arquivo (leitura do CSV falhou): " + label + " - " + e.getMessage());
+            failedFiles.incrementAndGet();
+        } catch (Exception e) {
+            log("Erro inesperado ao processar arquivo: " + label + " - " + e.getMessage(), e);
+            failedFiles.incrementAndGet();
+        } finally {
+            stats.finish();
+        }
+        return false;
+    }
+
+    // *** MÉTODOS DE TELEFONE (Ajustado o Regex para suportar o formato 82-33111200) ***
+
+    // Um normalizador por thread: o buffer de dígitos é reaproveitado a cada linha
+    private static final ThreadLocal<PhoneNormalizer> PHONE_NORMALIZER = ThreadLocal.withInitial(PhoneNormalizer::new);
+    // Números já vistos na linha atual (modo "all"), também reaproveitados entre as linhas
+    private static final ThreadLocal<long[]> ROW_PHONES = ThreadLocal.withInitial(() -> new long[MAX_PHONES_PER_ROW]);
+
+    /**
+     * Normaliza o primeiro telefone do campo para 55 + DDD + número, aplicando a regra do nono dígito.
+     * Procura por (DD) NNNN-NNNN OU DD-NNNNNNNN (ex: 82-33111200) sem regex; retorna "" se não houver telefone.
+     * O retorno é o buffer da thread atual e só vale até a próxima chamada.
+     */
+    static CharSequence normalizeFirstPhoneNumber(CharSequence telefonesRaw) {
+        PhoneNormalizer normalizer = PHONE_NORMALIZER.get();
+        return normalizer.normalizeFirst(telefonesRaw) ? normalizer : "";
+    }
+    
+    // ... (restante dos métodos de telefone getOperadora, identifyCarrier, identifyCarrierFallback, etc., inalterados) ...
+    // ... (métodos auxiliares extractStateFromFileName, log, formatDuration, inalterados) ...
+
+    // Classificador do pipeline: máscara das operadoras da linha, conforme -Dconsulta.phones
+    private static int classifyRow(CharSequence telefonesRaw) {
+        long start = Metrics.startSample();
+        int carriers = ALL_PHONES
+                ? getOperadoras(telefonesRaw, PHONE_PRIORITY, MAX_PHONES_PER_ROW)
+                : getOperadora(telefonesRaw).bit();
+        Metrics.GET_OPERADORA.recordSince(start);
+        return carriers;
+    }
+
+    static Operadora getOperadora(CharSequence telefonesRaw) {
+        return classifyNumber(normalizeFirstPhoneNumber(telefonesRaw));
+    }
+
+    /**
+     * Classifica todos os telefones do campo (até {@code maxPhones}) e devolve a máscara das operadoras
+     * da linha ({@link Operadora#bit()}) escolhidas pela {@code priority}. O primeiro número é o mesmo do
+     * getOperadora. Números repetidos na linha não são classificados de novo, a faixa de cada número
+     * passa pelo CarrierCache como no getOperadora, e a varredura para assim que os números restantes
+     * não podem mais mudar o resultado.
+     */
+    static int getOperadoras(CharSequence telefonesRaw, PhonePriority priority, int maxPhones) {
+        PhoneNormalizer normalizer = PHONE_NORMALIZER.get();
+        if (!normalizer.normalizeFirst(telefonesRaw)) {
+            return Operadora.SEM_OPERADORA.bit();
+        }
+        long[] seen = ROW_PHONES.get();
+        if (seen.length < maxPhones) {
+            seen = new long[maxPhones];
+            ROW_PHONES.set(seen);
+        }
+        int found = 0;
+        int distinct = 0;
+        int examined = 0;
+        do {
+            long number = normalizer.toLong();
+            if (!contains(seen, distinct, number)) {
+                seen[distinct++] = number;
+                found |= classifyNumber(normalizer).bit();
+                if (priority.isComplete(found)) break;
+            }
+        } while (++examined < maxPhones && normalizer.find(telefonesRaw, normalizer.end()));
+        return priority.apply(found);
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    // Operadora de um número já normalizado (55 + DDD + número)
+    private static Operadora classifyNumber(CharSequence fullNumber) {
+        Metrics.PHONE_NUMBERS.increment();
+        if (fullNumber.length() < 12) {
+            return Operadora.SEM_OPERADORA;
+        }
+
+        // A faixa do número (DDD + prefixo) já foi resolvida antes: uma leitura de array (que também conta
+        // o número em Metrics.FALLBACKS se a faixa foi resolvida pelo fallback)
+        Operadora cached = CarrierCache.get(fullNumber);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean[] fellBack = FELL_BACK.get();
+        fellBack[0] = false;
+        Operadora operadora = Operadora.fromName(lookupOperadora(fullNumber));
+        CarrierCache.put(fullNumber, operadora, fellBack[0]);
+        return operadora;
+    }
+
+    // Consulta completa no libphonenumber (parse, validação, tipo e mapa de operadoras)
+    static String lookupOperadora(CharSequence fullNumber) {
+        long start = System.nanoTime();
+        try {
+            return lookupOperadoraUntimed(fullNumber);
+        } finally {
+            Metrics.LIBPHONENUMBER.record(System.nanoTime() - start);
+        }
+    }
+
+    private static String lookupOperadoraUntimed(CharSequence fullNumber) {
+        try {
+            PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+            // Passamos o número com '55' e a região 'BR'
+            PhoneNumber numberProto = phoneUtil.parse(fullNumber, "BR");
+
+            if (!phoneUtil.isValidNumber(numberProto)) {
+                return "SEM OPERADORA";
+            }
+
+            PhoneNumberType type = phoneUtil.getNumberType(numberProto);
+
+            if (type == PhoneNumberType.FIXED_LINE) {
+                return "FIXO";  
+            }    
+            
+            if (type == PhoneNumberType.MOBILE || type == PhoneNumberType.FIXED_LINE_OR_MOBILE) {
+                return identifyCarrier(numberProto, fullNumber);
+            }
+
+            return "SEM OPERADORA";
+            
+        } catch (NumberParseException e) {
+            return "SEM OPERADORA";
+        } catch (Exception e) {
+            // Em caso de falha da lib (ex: falta do carrier.jar), tenta o fallback
+            return identifyCarrierFallback(fullNumber);
+        }
+    }
+
+    static String identifyCarrier(PhoneNumber numberProto, CharSequence fullNumber) {
+        try {
+            PhoneNumberToCarrierMapper carrierMapper = PhoneNumberToCarrierMapper.getInstance();
+            String carrier = carrierMapper.getNameForNumber(numberProto, Locale.forLanguageTag("pt-BR"));
+            
+            if (carrier != null && !carrier.isEmpty()) {
+                 String upperCarrier = carrier.toUpperCase();
+                 if (upperCarrier.contains("CLARO")) return "CLARO";
+                 if (upperCarrier.contains("VIVO")) return "VIVO";
+                 if (upperCarrier.contains("TIM")) return "TIM";
+                 if (upperCarrier.contains("OI")) return "OI";
+                 
+                 // Retorna outras operadoras (Nextel, Algar, etc.)
+                 return upperCarrier.replaceAll("[^A-Z]", "");  
+            }
+        } catch (Exception e) {
+            // Se a lib falhar aqui, cai no fallback
+        }
+        
+        return identifyCarrierFallback(fullNumber);
+    }
+
+    static String identifyCarrierFallback(CharSequence fullNumber) {
+        long start = System.nanoTime();
+        String carrier = identifyCarrierByPrefix(fullNumber);
+        FELL_BACK.get()[0] = true;
+        Metrics.FALLBACKS.increment();
+        Metrics.FALLBACK.record(System.nanoTime() - start);
+        return carrier;
+    }
+
+    private static String identifyCarrierByPrefix(CharSequence fullNumber) {
+        // fullNumber tem pelo menos 12 dígitos (55 + DDD + Número)
+        if (fullNumber.length() < 12) {
+            return "SEM OPERADORA";  
+        }
+        
+        // Verifica se é um móvel de 13 dígitos (55 + DDD + 9 + 8 dígitos)
+        if (fullNumber.length() == 13) {
+             // O dígito de identificação é o 4º dígito do número (índice 4 no fullNumber)
+             char digitoIdentificador = fullNumber.charAt(4);
+
+             // Esta lógica é uma estimativa baseada em faixas antigas de DDD, pode ser imprecisa!
+             switch (digitoIdentificador) {
+                 case '6':
+                 case '7':
+                     return "CLARO"; 
+                 case '9':
+                     return "VIVO";
+                 case '8': 
+                     return "TIM";
+                 case '3':
+                     return "OI";
+                 default:
+                     return "SEM OPERADORA";
+             }
+        }
+        
+        return "SEM OPERADORA";
+    }
+
+    private static String extractStateFromFileName(String fileName) {
+        return STATE_FILTER.stateOf(fileName);
+    }
+
+    // O horário é registrado na chamada; formatação e escrita ficam com a thread do AsyncLogger
+    private static void log(String msg) {
+        logger.log(msg);
+    }
+
+    private static void log(String msg, Throwable error) {
+        logger.log(msg, error);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        if (bytes >= 1024L * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+
+    private static String formatDuration(long totalSeconds) {
+        long h = totalSeconds / 3600;
+        long m = (totalSeconds % 3600) / 60;
+        long s = totalSeconds % 60;
+        return String.format("%02d:%02d:%02d", h, m, s);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package consultaoperadora;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Manifesto do modo incremental, gravado na pasta de saída: para cada CSV de entrada processado,
+ * o tamanho, a data de modificação, o XXH64 do conteúdo e os arquivos de saída que ele gerou.
+ *
+ * Formato texto, uma linha por arquivo, campos separados por TAB:
+ * {@code nome  tamanho  mtime  hash  saída1|saída2|...}. A linha "config" guarda as opções que mudam
+ * o resultado (deduplicação global); se elas mudarem, o manifesto inteiro deixa de valer.
+ */
+final class Manifest {
+
+    static final String FILE_NAME = "manifesto.tsv";
+    private static final String HEADER = "# ConsultaOperadoraV2 - manifesto do modo incremental, versão 1";
+
+    private final String config;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    Manifest(String config) {
+        this.config = config;
+    }
+
+    String config() {
+        return config;
+    }
+
+    Entry get(String inputName) {
+        return entries.get(inputName);
+    }
+
+    Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    void put(Entry entry) {
+        entries.put(entry.name, entry);
+    }
+
+    /** Lê o manifesto; se não existir ou for de outra versão, devolve um manifesto vazio. */
+    static Manifest load(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return new Manifest(null);
+        }
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            return new Manifest(null);
+        }
+
+        String config = null;
+        List<Entry> entries = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split("\t", -1);
+            if (parts.length == 2 && "config".equals(parts[0])) {
+                config = parts[1];
+            } else if (parts.length == 5) {
+                List<String> outputs = parts[4].isEmpty()
+                        ? Collections.emptyList()
+                        : Arrays.asList(parts[4].split("\\|"));
+                entries.add(new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        Long.parseUnsignedLong(parts[3], 16), outputs));
+            }
+        }
+
+        Manifest manifest = new Manifest(config);
+        for (Entry entry : entries) manifest.put(entry);
+        return manifest;
+    }
+
+    /** Grava num arquivo temporário e renomeia por cima do anterior: um manifesto nunca fica pela metade. */
+    void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("config\t" + config);
+            out.newLine();
+            for (Entry entry : entries.values()) {
+                out.write(entry.name + '\t' + entry.size + '\t' + entry.lastModified + '\t' +
+                        Long.toHexString(entry.hash) + '\t' + String.join("|", entry.outputs));
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static final class Entry {
+        final String name;
+        final long size;
+        final long lastModified;
+        final long hash;
+        final List<String> outputs;
+
+        Entry(String name, long size, long lastModified, long hash, List<String> outputs) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.outputs = outputs;
+        }
+
+        Entry withOutputs(List<String> outputs) {
+            return new Entry(name, size, lastModified, hash, outputs);
+        }
+    }
+}
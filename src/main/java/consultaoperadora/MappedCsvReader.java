@@ -0,0 +1,128 @@
+package consultaoperadora;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Leitura sequencial por memory-mapping (FileChannel.map), sem decodificar o arquivo inteiro.
+ *
+ * Os bytes ISO-8859-1 são varridos direto no mapeamento pelo Latin1CsvParser; só as 6 colunas usadas
+ * são copiadas, para um buffer reutilizado, e expostas como CharSequence. Arquivos maiores que a
+ * janela de mapeamento são lidos em janelas sucessivas; um registro que cruza o fim da janela faz
+ * a janela ser remapeada a partir do início dele.
+ */
+class MappedCsvReader implements RowReader {
+
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final CsvFormat format;
+    private final Latin1CsvParser parser;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowSize = WINDOW_SIZE;
+    private int pos;
+
+    MappedCsvReader(File csvFile, char delimiter, int keptFields) throws IOException {
+        this(csvFile, delimiter, keptFields, 0);
+    }
+
+    /** @param startOffset início de um registro (0 ou uma posição devolvida por {@link #position()}) */
+    MappedCsvReader(File csvFile, char delimiter, int keptFields, long startOffset) throws IOException {
+        this.channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.format = CsvFormat.of(delimiter);
+        this.parser = new Latin1CsvParser(delimiter, keptFields);
+        map(Math.min(startOffset, fileSize));
+    }
+
+    /**
+     * Leitor que descobre o formato pelo próprio arquivo: a amostra do {@link CsvFormat} é o começo da
+     * primeira janela mapeada (ou, ao retomar de um checkpoint, um mapeamento do início pelo mesmo canal).
+     * O BOM, se houver, é pulado.
+     */
+    MappedCsvReader(File csvFile, int keptFields, long startOffset) throws IOException {
+        this.channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        try {
+            map(Math.min(startOffset, fileSize));
+            this.format = windowStart == 0 ? sniffWindow() : CsvFormat.sniff(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.parser = new Latin1CsvParser(format.delimiter, keptFields, format.utf8);
+        if (windowStart == 0) pos = format.bomLength;
+    }
+
+    private CsvFormat sniffWindow() throws IOException {
+        int limit = Math.min(window.limit(), CsvFormat.SAMPLE_BYTES);
+        return CsvFormat.sniff(window, limit, limit == fileSize);
+    }
+
+    @Override
+    public CsvFormat format() {
+        return format;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            boolean eof = windowStart + limit >= fileSize;
+            if (pos >= limit && !eof) {
+                // O último registro terminou exatamente no fim da janela
+                map(windowStart + pos);
+                continue;
+            }
+            int end = parser.parse(window, pos, limit, eof);
+            if (end >= 0) {
+                if (end == pos) return false; // fim do arquivo
+                pos = end;
+                return true;
+            }
+            // Registro cruza o fim da janela: remapeia a partir dele (e aumenta a janela se ele não couber)
+            if (pos == 0) {
+                windowSize = (int) Math.min(Integer.MAX_VALUE - 8, (long) windowSize * 2);
+            }
+            map(windowStart + pos);
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long size = Math.min(windowSize, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        pos = 0;
+    }
+
+    @Override
+    public int fieldCount() {
+        return parser.fieldCount();
+    }
+
+    @Override
+    public CharSequence field(int index) {
+        return parser.field(index);
+    }
+
+    @Override
+    public int carriers() {
+        return 0;
+    }
+
+    @Override
+    public long position() {
+        return windowStart + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,54 @@
+package consultaoperadora;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limite de memória para os arquivos em processamento ao mesmo tempo.
+ *
+ * Cada arquivo reserva a sua estimativa de memória antes de começar e devolve no fim; quando o
+ * orçamento acaba, o próximo arquivo espera. Um arquivo cuja estimativa passa do orçamento inteiro
+ * reserva o orçamento todo e roda sozinho. As reservas são feitas em KB num Semaphore justo, na
+ * ordem em que são pedidas.
+ */
+final class MemoryBudget {
+
+    private final long budgetBytes;
+    private final int totalPermits;
+    private final Semaphore permits;
+    private final AtomicLong inUse = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+
+    MemoryBudget(long budgetBytes) {
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budgetBytes / 1024));
+        this.budgetBytes = totalPermits * 1024L;
+        this.permits = new Semaphore(totalPermits, true);
+    }
+
+    long budgetBytes() {
+        return budgetBytes;
+    }
+
+    /** Maior quantidade reservada ao mesmo tempo. */
+    long peakBytes() {
+        return peak.get();
+    }
+
+    /**
+     * Espera até haver memória para a estimativa.
+     *
+     * @return a quantidade reservada (a estimativa, limitada ao orçamento), a ser passada ao {@link #release}
+     */
+    long acquire(long bytes) throws InterruptedException {
+        int kb = (int) Math.min(totalPermits, Math.max(1, (bytes + 1023) / 1024));
+        permits.acquire(kb);
+        long reserved = kb * 1024L;
+        peak.accumulateAndGet(inUse.addAndGet(reserved), Math::max);
+        return reserved;
+    }
+
+    void release(long reserved) {
+        inUse.addAndGet(-reserved);
+        permits.release((int) (reserved / 1024));
+    }
+}
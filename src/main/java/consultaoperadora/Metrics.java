@@ -0,0 +1,342 @@
+package consultaoperadora;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas da execução, consultáveis enquanto ela roda (JMX e HTTP, ver {@link MetricsServer}) e
+ * resumidas no relatório final.
+ *
+ * - Por arquivo: linhas e bytes lidos até agora, tempo decorrido e as taxas (linhas/s e bytes/s).
+ * - Histogramas de latência: classificação da linha (getOperadora), consultas ao libphonenumber e o
+ *   fallback por prefixo. A classificação com cache leva poucas centenas de ns, então só 1 em
+ *   {@code -Dconsulta.metrics.sample} chamadas (padrão: 16) é cronometrada; as outras duas são raras
+ *   (só em faixas ainda não vistas) e são todas medidas.
+ * - Contadores: números classificados, quantos caíram no fallback e linhas descartadas pela deduplicação.
+ * - Gauges lidos na hora da consulta: heap e GC da JVM, e os contadores já existentes (cache de
+ *   operadoras, arquivos processados) registrados com {@link #gauge}.
+ *
+ * Tudo o que é atualizado por várias threads usa LongAdder.
+ */
+final class Metrics {
+
+    private static final int SAMPLE_EVERY = Math.max(0, Integer.getInteger("consulta.metrics.sample", 16));
+
+    static final Histogram GET_OPERADORA = new Histogram("consulta_get_operadora_seconds",
+            "Classificação do campo de telefones de uma linha (amostrada)");
+    static final Histogram LIBPHONENUMBER = new Histogram("consulta_libphonenumber_seconds",
+            "Consulta ao libphonenumber (faixas fora do cache)");
+    static final Histogram FALLBACK = new Histogram("consulta_fallback_seconds",
+            "Identificação da operadora pelo fallback de prefixo");
+
+    static final LongAdder PHONE_NUMBERS = new LongAdder();
+    static final LongAdder FALLBACKS = new LongAdder();
+    static final LongAdder DEDUP_CHECKED = new LongAdder();
+    static final LongAdder DEDUP_DISCARDED = new LongAdder();
+
+    private static final Map<String, FileStats> FILES = new ConcurrentHashMap<>();
+    private static final List<Gauge> GAUGES = new ArrayList<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Início de uma medição amostrada: System.nanoTime() numa a cada SAMPLE_EVERY chamadas, 0 nas
+     * demais (e o {@link Histogram#recordSince} ignora o 0).
+     */
+    static long startSample() {
+        if (SAMPLE_EVERY == 0) return 0;
+        if (SAMPLE_EVERY > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) != 0) return 0;
+        return System.nanoTime();
+    }
+
+    /** Registra um valor lido na hora da consulta (ex: contadores que já existem em outras classes). */
+    static synchronized void gauge(String name, String help, LongSupplier value) {
+        GAUGES.add(new Gauge(name, help, value));
+    }
+
+    /** Estatísticas de um arquivo de entrada, criadas quando o processamento dele começa. */
+    static FileStats file(String name, long size) {
+        return file(name, 0, size);
+    }
+
+    /** Como {@link #file(String, long)}, para um trecho do arquivo que começa no byte {@code offset}. */
+    static FileStats file(String name, long offset, long size) {
+        FileStats stats = new FileStats(name, offset, size);
+        FILES.put(name, stats);
+        return stats;
+    }
+
+    /** Fração das linhas oferecidas à deduplicação que foram descartadas. */
+    static double dedupDiscardRatio() {
+        long checked = DEDUP_CHECKED.sum();
+        return checked > 0 ? DEDUP_DISCARDED.sum() / (double) checked : 0;
+    }
+
+    /** Fração dos números classificados que caíram no fallback por prefixo. */
+    static double fallbackRatio() {
+        long numbers = PHONE_NUMBERS.sum();
+        return numbers > 0 ? FALLBACKS.sum() / (double) numbers : 0;
+    }
+
+    /** Todas as métricas no momento da chamada. */
+    static List<Sample> snapshot() {
+        List<Sample> samples = new ArrayList<>();
+        for (FileStats file : FILES.values()) {
+            file.addTo(samples);
+        }
+        for (Histogram histogram : new Histogram[]{GET_OPERADORA, LIBPHONENUMBER, FALLBACK}) {
+            histogram.addTo(samples);
+        }
+        samples.add(new Sample("consulta_phone_numbers_total", "counter",
+                "Números de telefone classificados", "", PHONE_NUMBERS.sum()));
+        samples.add(new Sample("consulta_carrier_fallback_total", "counter",
+                "Números classificados pelo fallback de prefixo", "", FALLBACKS.sum()));
+        samples.add(new Sample("consulta_dedup_checked_total", "counter",
+                "Linhas com CNPJ válido oferecidas à deduplicação", "", DEDUP_CHECKED.sum()));
+        samples.add(new Sample("consulta_dedup_discarded_total", "counter",
+                "Linhas descartadas por CNPJ repetido", "", DEDUP_DISCARDED.sum()));
+        synchronized (Metrics.class) {
+            for (Gauge gauge : GAUGES) {
+                samples.add(new Sample(gauge.name, "gauge", gauge.help, "", gauge.value.getAsLong()));
+            }
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        samples.add(new Sample("jvm_heap_used_bytes", "gauge", "Heap em uso", "", heap.getUsed()));
+        samples.add(new Sample("jvm_heap_committed_bytes", "gauge", "Heap reservado", "", heap.getCommitted()));
+        samples.add(new Sample("jvm_heap_max_bytes", "gauge", "Heap máximo (-Xmx)", "", heap.getMax()));
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = "gc=\"" + gc.getName() + "\"";
+            samples.add(new Sample("jvm_gc_collections_total", "counter", "Coletas do GC", labels,
+                    Math.max(0, gc.getCollectionCount())));
+            samples.add(new Sample("jvm_gc_seconds_total", "counter", "Tempo total em GC", labels,
+                    Math.max(0, gc.getCollectionTime()) / 1000.0));
+        }
+        return samples;
+    }
+
+    /** As métricas no formato texto do Prometheus. */
+    static void writePrometheus(Appendable out) throws IOException {
+        // As séries de uma mesma métrica precisam sair juntas, depois do HELP e do TYPE
+        Map<String, List<Sample>> families = new LinkedHashMap<>();
+        for (Sample sample : snapshot()) {
+            families.computeIfAbsent(sample.family(), family -> new ArrayList<>()).add(sample);
+        }
+        for (Map.Entry<String, List<Sample>> family : families.entrySet()) {
+            Sample first = family.getValue().get(0);
+            out.append("# HELP ").append(family.getKey()).append(' ').append(first.help).append('\n');
+            out.append("# TYPE ").append(family.getKey()).append(' ').append(first.type).append('\n');
+            for (Sample sample : family.getValue()) {
+                out.append(sample.name);
+                if (!sample.labels.isEmpty()) out.append('{').append(sample.labels).append('}');
+                out.append(' ').append(format(sample.value)).append('\n');
+            }
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+
+    /** Uma métrica (com os rótulos já formatados, ex: {@code file="al_ativos.csv"}). */
+    static final class Sample {
+        final String name;
+        final String type;
+        final String help;
+        final String labels;
+        final double value;
+
+        Sample(String name, String type, String help, String labels, double value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.labels = labels;
+            this.value = value;
+        }
+
+        // Nome do histograma para as séries _bucket, _sum e _count
+        String family() {
+            if ("histogram".equals(type)) {
+                for (String suffix : new String[]{"_bucket", "_sum", "_count"}) {
+                    if (name.endsWith(suffix)) return name.substring(0, name.length() - suffix.length());
+                }
+            }
+            return name;
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String help, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Histograma de durações em faixas de potência de 2 (64 ns a ~17 s), um LongAdder por faixa.
+     * Os percentis do relatório são o limite superior da faixa.
+     */
+    static final class Histogram {
+        private static final int MIN_SHIFT = 6;   // 64 ns
+        private static final int BUCKETS = 29;    // até 2^34 ns (~17 s)
+
+        private final String name;
+        private final String help;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS + 1]; // o último é o +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(String name, String help) {
+            this.name = name;
+            this.help = help;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /** Registra o tempo desde {@code start} (de System.nanoTime()); 0 = chamada não amostrada. */
+        void recordSince(long start) {
+            if (start != 0) record(System.nanoTime() - start);
+        }
+
+        void record(long nanos) {
+            int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos - 1)) - MIN_SHIFT;
+            buckets[Math.min(BUCKETS, Math.max(0, bucket))].increment();
+            sumNanos.add(nanos);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        /** Limite superior (em ns) da faixa que contém o percentil {@code q} (0 a 1), ou 0 sem medições. */
+        long percentileNanos(double q) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return 1L << Math.min(MIN_SHIFT + i, 62);
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /** Média das medições em nanossegundos (0 sem medições). */
+        long meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : sumNanos.sum() / count;
+        }
+
+        /** Resumo para o log: medições, p50, p99 e média. */
+        String describe() {
+            long count = count();
+            if (count == 0) return "sem medições";
+            NumberFormat nf = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+            return String.format(Locale.ROOT, "%s medições, p50 %s, p99 %s, média %s", nf.format(count),
+                    formatNanos(percentileNanos(0.5)), formatNanos(percentileNanos(0.99)),
+                    formatNanos(sumNanos.sum() / count));
+        }
+
+        private void addTo(List<Sample> samples) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < BUCKETS ? format((1L << (MIN_SHIFT + i)) / 1e9) : "+Inf";
+                samples.add(new Sample(name + "_bucket", "histogram", help, "le=\"" + le + "\"", cumulative));
+            }
+            samples.add(new Sample(name + "_sum", "histogram", help, "", sumNanos.sum() / 1e9));
+            samples.add(new Sample(name + "_count", "histogram", help, "", cumulative));
+        }
+
+        private static String formatNanos(long nanos) {
+            if (nanos < 1_000) return nanos + " ns";
+            if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1f µs", nanos / 1e3);
+            if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+            return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+        }
+    }
+
+    /**
+     * Progresso de um arquivo: atualizado só pelo despacho do pipeline dele e lido pelas consultas,
+     * por isso campos volatile em vez de LongAdder.
+     */
+    static final class FileStats {
+        private final String name;
+        private final long offset;
+        private final long size;
+        private final long start = System.nanoTime();
+        private volatile long rows;
+        private volatile long bytes;
+        private volatile long end;
+
+        FileStats(String name, long offset, long size) {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /** Linhas lidas e posição na entrada até agora (-1 se o leitor não sabe a posição). */
+        void progress(long rows, long position) {
+            this.rows = rows;
+            if (position >= 0) this.bytes = position - offset;
+        }
+
+        void finish() {
+            end = System.nanoTime();
+        }
+
+        double elapsedSeconds() {
+            long stop = end != 0 ? end : System.nanoTime();
+            return (stop - start) / 1e9;
+        }
+
+        double rowsPerSecond() {
+            double seconds = elapsedSeconds();
+            return seconds > 0 ? rows / seconds : 0;
+        }
+
+        double bytesPerSecond() {
+            double seconds = elapsedSeconds();
+            return seconds > 0 ? bytes / seconds : 0;
+        }
+
+        private void addTo(List<Sample> samples) {
+            String labels = "file=\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            samples.add(new Sample("consulta_file_rows_total", "counter", "Linhas lidas do arquivo", labels, rows));
+            samples.add(new Sample("consulta_file_bytes_total", "counter", "Bytes lidos do arquivo", labels, bytes));
+            samples.add(new Sample("consulta_file_size_bytes", "gauge", "Tamanho do arquivo", labels, size));
+            samples.add(new Sample("consulta_file_elapsed_seconds", "gauge", "Tempo de processamento do arquivo",
+                    labels, elapsedSeconds()));
+            samples.add(new Sample("consulta_file_rows_per_second", "gauge", "Linhas por segundo do arquivo",
+                    labels, rowsPerSecond()));
+            samples.add(new Sample("consulta_file_bytes_per_second", "gauge", "Bytes por segundo do arquivo",
+                    labels, bytesPerSecond()));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package consultaoperadora;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Exposição das {@link Metrics} durante a execução:
+ *
+ * - JMX (padrão; {@code -Dconsulta.metrics.jmx=false} desativa): MBean "consultaoperadora:type=Metrics",
+ *   com um atributo somente leitura por série (ex: {@code consulta_file_rows_total[file="al_ativos.csv"]}),
+ *   visível no JConsole / VisualVM.
+ * - HTTP ({@code -Dconsulta.metrics.port}, desativado por padrão): GET /metrics no formato texto do
+ *   Prometheus, só em 127.0.0.1.
+ *
+ * As duas formas leem o mesmo {@link Metrics#snapshot()}: nada é calculado fora das consultas.
+ */
+final class MetricsServer implements AutoCloseable {
+
+    private static final String OBJECT_NAME = "consultaoperadora:type=Metrics";
+
+    private final HttpServer http;
+    private final ObjectName registered;
+
+    private MetricsServer(HttpServer http, ObjectName registered) {
+        this.http = http;
+        this.registered = registered;
+    }
+
+    /**
+     * Registra o MBean e abre a porta HTTP conforme a configuração.
+     *
+     * @param port porta do /metrics (0 desativa)
+     */
+    static MetricsServer start(boolean jmx, int port) throws IOException {
+        ObjectName registered = null;
+        if (jmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new MetricsMBean(), name);
+                    registered = name;
+                }
+            } catch (Exception e) {
+                throw new IOException("Não foi possível registrar o MBean de métricas: " + e.getMessage(), e);
+            }
+        }
+
+        HttpServer http = null;
+        if (port > 0) {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            http.createContext("/metrics", exchange -> {
+                try {
+                    StringBuilder text = new StringBuilder(8 * 1024);
+                    Metrics.writePrometheus(text);
+                    byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            });
+            http.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            http.start();
+        }
+        return new MetricsServer(http, registered);
+    }
+
+    /** Endereço do /metrics, ou null se o HTTP está desativado. */
+    String url() {
+        if (http == null) return null;
+        InetSocketAddress address = http.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + "/metrics";
+    }
+
+    @Override
+    public void close() {
+        if (http != null) {
+            http.stop(0);
+        }
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (Exception e) {
+                // Já removido: nada a fazer
+            }
+        }
+    }
+
+    // Atributos montados a cada consulta, porque os arquivos (e as séries deles) aparecem durante a execução
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private static Map<String, Metrics.Sample> attributes() {
+            List<Metrics.Sample> samples = Metrics.snapshot();
+            Map<String, Metrics.Sample> attributes = new LinkedHashMap<>();
+            for (Metrics.Sample sample : samples) {
+                attributes.put(sample.labels.isEmpty() ? sample.name : sample.name + "[" + sample.labels + "]", sample);
+            }
+            return attributes;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Metrics.Sample sample = attributes().get(attribute);
+            if (sample == null) throw new AttributeNotFoundException(attribute);
+            return sample.value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Metrics.Sample> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Metrics.Sample sample = attributes.get(name);
+                if (sample != null) list.add(new Attribute(name, sample.value));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Métricas são somente leitura");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Metrics.Sample> attributes = attributes();
+            MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+            int i = 0;
+            for (Map.Entry<String, Metrics.Sample> attribute : attributes.entrySet()) {
+                infos[i++] = new MBeanAttributeInfo(attribute.getKey(), "double", attribute.getValue().help,
+                        true, false, false);
+            }
+            return new MBeanInfo(MetricsMBean.class.getName(), "Métricas do processamento", infos,
+                    null, null, null);
+        }
+    }
+}
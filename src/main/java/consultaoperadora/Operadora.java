@@ -0,0 +1,43 @@
+package consultaoperadora;
+
+/**
+ * Destinos possíveis de uma linha: as quatro operadoras móveis, telefone fixo ou sem operadora.
+ * O nome da constante é usado no arquivo de saída ("{UF} - SEM_OPERADORA.csv") e o rótulo nos logs.
+ */
+enum Operadora {
+    CLARO("CLARO"),
+    VIVO("VIVO"),
+    TIM("TIM"),
+    OI("OI"),
+    FIXO("FIXO"),
+    SEM_OPERADORA("SEM OPERADORA");
+
+    private static final Operadora[] VALUES = values();
+
+    private final String label;
+
+    Operadora(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    /** Bit da operadora nas máscaras de classificação (uma linha pode ir para mais de uma operadora). */
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    static Operadora fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /** Converte o nome devolvido pela classificação; outras operadoras (Nextel, Algar, etc.) ficam em SEM OPERADORA. */
+    static Operadora fromName(String name) {
+        for (Operadora operadora : VALUES) {
+            if (operadora.label.equals(name)) return operadora;
+        }
+        return SEM_OPERADORA;
+    }
+}
@@ -0,0 +1,207 @@
+package consultaoperadora;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+/**
+ * Leitura de um único CSV grande em paralelo.
+ *
+ * O CsvChunker divide o arquivo em blocos alinhados ao fim de registro; cada bloco é parseado
+ * (Latin1CsvParser, só as colunas usadas) e classificado (validação do CNPJ + operadoras) numa
+ * tarefa do pool. As linhas são devolvidas na
+ * ordem original do arquivo, então a deduplicação e a gravação continuam sequenciais no processFile
+ * e o resultado é idêntico ao da leitura sequencial. Apenas uma janela limitada de blocos fica em
+ * memória ao mesmo tempo.
+ */
+class ParallelCsvReader implements RowReader {
+
+    private final CsvChunker chunker;
+    private final char delimiter;
+    private final boolean utf8;
+    private final ToIntFunction<CharSequence> classifier;
+    private final int keptFields;
+    private final int window;
+    private final Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+
+    private ParsedChunk current;
+    private int index;
+    private String[] row;
+    private int fieldCount;
+    private int carriers;
+    private long position;
+    private long nextChunkStart;
+    private boolean exhausted;
+
+    /**
+     * @param classifier função aplicada ao campo de telefones das linhas com CNPJ válido, que devolve a
+     *                   máscara das operadoras da linha
+     */
+    ParallelCsvReader(File csvFile, char delimiter, int keptFields, int chunkSize,
+                      ToIntFunction<CharSequence> classifier) throws IOException {
+        this(csvFile, delimiter, keptFields, chunkSize, classifier, 0);
+    }
+
+    /** @param startOffset início de um registro (0 ou uma posição devolvida por {@link #position()}) */
+    ParallelCsvReader(File csvFile, char delimiter, int keptFields, int chunkSize,
+                      ToIntFunction<CharSequence> classifier, long startOffset) throws IOException {
+        this(new CsvChunker(csvFile, delimiter, chunkSize, startOffset), keptFields, classifier);
+    }
+
+    /** Leitor que descobre o formato pelo início do arquivo (ver {@link CsvChunker#CsvChunker(File, int, long)}). */
+    ParallelCsvReader(File csvFile, int keptFields, int chunkSize,
+                      ToIntFunction<CharSequence> classifier, long startOffset) throws IOException {
+        this(new CsvChunker(csvFile, chunkSize, startOffset), keptFields, classifier);
+    }
+
+    private ParallelCsvReader(CsvChunker chunker, int keptFields, ToIntFunction<CharSequence> classifier) {
+        this.chunker = chunker;
+        this.nextChunkStart = chunker.start();
+        this.delimiter = chunker.format().delimiter;
+        this.utf8 = chunker.format().utf8;
+        this.keptFields = keptFields;
+        this.classifier = classifier;
+        this.window = Math.max(2, Scheduler.cpuThreads() + 1);
+    }
+
+    @Override
+    public CsvFormat format() {
+        return chunker.format();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (current == null || index >= current.rows.size()) {
+            fill();
+            Future<ParsedChunk> next = inFlight.poll();
+            if (next == null) {
+                current = null;
+                return false;
+            }
+            current = await(next);
+            index = 0;
+        }
+        row = current.rows.get(index);
+        fieldCount = current.fieldCounts[index];
+        carriers = current.carriers[index];
+        position = current.start + current.ends[index];
+        index++;
+        return true;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public CharSequence field(int index) {
+        return row[index];
+    }
+
+    @Override
+    public int carriers() {
+        return carriers;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    private void fill() throws IOException {
+        while (!exhausted && inFlight.size() < window) {
+            byte[] chunk = chunker.nextChunk();
+            if (chunk == null) {
+                exhausted = true;
+                break;
+            }
+            long start = nextChunkStart;
+            nextChunkStart += chunk.length;
+            // Pool de CPU compartilhado (work-stealing, uma thread por núcleo)
+            inFlight.add(Scheduler.cpu().submit(() -> parse(chunk, start)));
+        }
+    }
+
+    private ParsedChunk parse(byte[] chunk, long start) throws IOException {
+        Latin1CsvParser parser = new Latin1CsvParser(delimiter, keptFields, utf8);
+        ByteBuffer buf = ByteBuffer.wrap(chunk);
+        List<String[]> rows = new ArrayList<>();
+        int[] fieldCounts = new int[64];
+        int[] ends = new int[64];
+
+        int pos = 0;
+        int end;
+        while ((end = parser.parse(buf, pos, chunk.length, true)) > pos) {
+            pos = end;
+            int count = parser.fieldCount();
+            String[] row = new String[Math.min(count, keptFields)];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = parser.field(i).toString();
+            }
+            if (rows.size() == fieldCounts.length) {
+                fieldCounts = Arrays.copyOf(fieldCounts, fieldCounts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            fieldCounts[rows.size()] = count;
+            ends[rows.size()] = end;
+            rows.add(row);
+        }
+
+        // Classifica só o que o processFile vai de fato gravar (linhas completas com CNPJ válido)
+        int[] carriers = new int[rows.size()];
+        for (int i = 0; i < carriers.length; i++) {
+            if (fieldCounts[i] < 6) continue;
+            String[] row = rows.get(i);
+            if (CnpjSet.parse(row[0]) < 0) continue;
+            carriers[i] = classifier.applyAsInt(row[5]);
+        }
+        return new ParsedChunk(start, rows, fieldCounts, ends, carriers);
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Leitura paralela interrompida", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<ParsedChunk> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+        chunker.close();
+    }
+
+    private static final class ParsedChunk {
+        final long start; // posição do bloco no arquivo
+        final List<String[]> rows;
+        final int[] fieldCounts;
+        final int[] ends; // fim de cada linha, relativo ao início do bloco
+        final int[] carriers; // máscara das operadoras de cada linha
+
+        ParsedChunk(long start, List<String[]> rows, int[] fieldCounts, int[] ends, int[] carriers) {
+            this.start = start;
+            this.rows = rows;
+            this.fieldCounts = fieldCounts;
+            this.ends = ends;
+            this.carriers = carriers;
+        }
+    }
+}
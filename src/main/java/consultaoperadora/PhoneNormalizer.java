@@ -0,0 +1,254 @@
+package consultaoperadora;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizador de telefones sem regex e sem Strings intermediárias.
+ *
+ * Varre o campo "telefones" caractere a caractere e reconhece os mesmos formatos do regex original
+ * ({@link #normalizeWithRegex}): "DD-NNNNNNNN" / "DD NNNNN NNNN" e "(DD) NNNN-NNNN". O resultado
+ * (55 + DDD + número, com a regra do nono dígito) fica num buffer de dígitos reutilizado, exposto
+ * como CharSequence (aceito direto pelo PhoneNumberUtil.parse) ou como long.
+ *
+ * Não é thread-safe: cada thread deve ter a sua instância.
+ */
+class PhoneNormalizer implements CharSequence {
+
+    // Regex original, mantido como referência de equivalência (e para o benchmark)
+    private static final Pattern FLEX_NUMBER_PATTERN =
+            Pattern.compile("(\\d{2})[- ]*(\\d{4,5})[- ]*(\\d{4})|\\((\\d{2})\\)\\s*([\\d\\s-]+)");
+
+    private char[] digits = new char[16];
+    private int length;
+    private int end;
+
+    /**
+     * Normaliza o primeiro telefone encontrado no campo.
+     *
+     * @return false se o campo estiver vazio, contiver "()" ou não tiver nenhum telefone reconhecível
+     */
+    boolean normalizeFirst(CharSequence telefones) {
+        length = 0;
+        if (telefones == null || isBlank(telefones) || containsEmptyParens(telefones)) {
+            return false;
+        }
+        return find(telefones, 0);
+    }
+
+    /**
+     * Procura o próximo telefone a partir de {@code from}, com a mesma semântica do Matcher.find()
+     * sobre o regex original. Em caso de sucesso, {@link #end()} indica onde o trecho reconhecido termina.
+     */
+    boolean find(CharSequence s, int from) {
+        length = 0;
+        int n = s.length();
+        for (int i = from; i < n; i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                if (matchDashed(s, i, n)) return true;
+            } else if (c == '(') {
+                if (matchParenthesized(s, i, n)) return true;
+            }
+        }
+        return false;
+    }
+
+    // (\d{2})[- ]*(\d{4,5})[- ]*(\d{4})
+    private boolean matchDashed(CharSequence s, int i, int n) {
+        if (i + 1 >= n || !isDigit(s.charAt(i + 1))) return false;
+
+        int q = skipSeparators(s, i + 2, n);
+        int run1 = digitRun(s, q, n);
+
+        int part1;       // tamanho do grupo NNNN/NNNNN
+        int part2Start;  // início do grupo NNNN final
+        if (run1 >= 9) {
+            // Sequência contínua: o \d{4,5} guloso fica com 5 dígitos
+            part1 = 5;
+            part2Start = q + 5;
+        } else if (run1 == 8) {
+            part1 = 4;
+            part2Start = q + 4;
+        } else if (run1 == 4 || run1 == 5) {
+            // Grupo separado por '-' ou ' ' do NNNN final
+            part2Start = skipSeparators(s, q + run1, n);
+            if (digitRun(s, part2Start, n) < 4) return false;
+            part1 = run1;
+        } else {
+            return false;
+        }
+
+        begin(s.charAt(i), s.charAt(i + 1));
+        appendDigits(s, q, q + part1);
+        appendDigits(s, part2Start, part2Start + 4);
+        end = part2Start + 4;
+        applyNinthDigit();
+        return true;
+    }
+
+    // \((\d{2})\)\s*([\d\s-]+)
+    private boolean matchParenthesized(CharSequence s, int i, int n) {
+        if (i + 3 >= n || !isDigit(s.charAt(i + 1)) || !isDigit(s.charAt(i + 2)) || s.charAt(i + 3) != ')') {
+            return false;
+        }
+
+        int p = i + 4;
+        while (p < n && isWhitespace(s.charAt(p))) p++;
+        int q = p;
+        while (q < n && (isDigit(s.charAt(q)) || isWhitespace(s.charAt(q)) || s.charAt(q) == '-')) q++;
+
+        if (q == p) {
+            // O grupo precisa de ao menos um caractere: o regex devolve um espaço do \s* (sem dígitos)
+            if (p == i + 4) return false;
+            q = p;
+        }
+
+        begin(s.charAt(i + 1), s.charAt(i + 2));
+        appendDigits(s, p, q);
+        end = q;
+        applyNinthDigit();
+        return true;
+    }
+
+    private void begin(char d1, char d2) {
+        length = 0;
+        append('5');
+        append('5');
+        append(d1);
+        append(d2);
+    }
+
+    private void appendDigits(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) append(c);
+        }
+    }
+
+    // Regra do nono dígito: número de 8 dígitos começando com 6, 7, 8 ou 9 ganha um 9 na frente
+    private void applyNinthDigit() {
+        if (length - 4 == 8 && digits[4] >= '6' && digits[4] <= '9') {
+            append('0');
+            System.arraycopy(digits, 4, digits, 5, 8);
+            digits[4] = '9';
+        }
+    }
+
+    private void append(char c) {
+        if (length == digits.length) digits = Arrays.copyOf(digits, length * 2);
+        digits[length++] = c;
+    }
+
+    /** Posição logo após o último telefone reconhecido. */
+    int end() {
+        return end;
+    }
+
+    /** Os dígitos normalizados como long, ou -1 se não couberem (mais de 18 dígitos). */
+    long toLong() {
+        if (length == 0 || length > 18) return -1;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value * 10 + (digits[i] - '0');
+        }
+        return value;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) throw new IndexOutOfBoundsException("index: " + index);
+        return digits[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(digits, 0, length);
+    }
+
+    private static int skipSeparators(CharSequence s, int p, int n) {
+        while (p < n && (s.charAt(p) == '-' || s.charAt(p) == ' ')) p++;
+        return p;
+    }
+
+    private static int digitRun(CharSequence s, int p, int n) {
+        int start = p;
+        while (p < n && isDigit(s.charAt(p))) p++;
+        return p - start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Mesmo conjunto do \s do java.util.regex: [ \t\n\x0B\f\r]
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    // Equivalente a telefones.trim().isEmpty()
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
+    private static boolean containsEmptyParens(CharSequence s) {
+        for (int i = 0; i + 1 < s.length(); i++) {
+            if (s.charAt(i) == '(' && s.charAt(i + 1) == ')') return true;
+        }
+        return false;
+    }
+
+    /**
+     * Implementação original por regex (antigo Main.normalizeFirstPhoneNumber).
+     * Não é usada no processamento; serve de referência de equivalência para o normalizador.
+     */
+    static String normalizeWithRegex(String telefonesRaw) {
+        if (telefonesRaw == null || telefonesRaw.trim().isEmpty() || telefonesRaw.contains("()")) {
+            return "";
+        }
+
+        Matcher matcher = FLEX_NUMBER_PATTERN.matcher(telefonesRaw);
+
+        String ddd = null;
+        String numero = null;
+
+        if (matcher.find()) {
+            // Grupo 1 e 2/3: Formato DD-NNNNNNNN (ex: 82-33111200)
+            if (matcher.group(1) != null) {
+                ddd = matcher.group(1);
+                numero = matcher.group(2) + matcher.group(3);
+            }
+            // Grupo 4 e 5: Formato (DD) NNNN-NNNN
+            else if (matcher.group(4) != null) {
+                ddd = matcher.group(4);
+                numero = matcher.group(5).replaceAll("[^\\d]", "");
+            }
+        }
+
+        if (ddd == null || numero == null) {
+            return "";
+        }
+
+        numero = numero.replaceAll("[^\\d]", "");
+
+        if (numero.length() == 8 && numero.matches("^[6-9]\\d{7}$")) {
+            numero = "9" + numero;
+        }
+
+        return "55" + ddd + numero;
+    }
+}
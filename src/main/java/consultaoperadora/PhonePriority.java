@@ -0,0 +1,52 @@
+package consultaoperadora;
+
+import java.util.Locale;
+
+/**
+ * Com todos os telefones classificados ({@code -Dconsulta.phones=all}), decide para quais operadoras
+ * a linha vai entre as encontradas nos números dela. Números sem operadora reconhecida só contam
+ * quando nenhum outro foi classificado (a linha vai para SEM OPERADORA).
+ */
+enum PhonePriority {
+    /** Todas as operadoras encontradas, móveis e fixo. */
+    ALL(Operadora.FIXO.bit() | mobileBits()),
+    /** Só as móveis quando houver alguma; fixo apenas se a linha não tiver celular. */
+    MOBILE(mobileBits()),
+    /** Só fixo quando houver algum; as móveis apenas se a linha não tiver fixo. */
+    FIXED(Operadora.FIXO.bit());
+
+    // Operadoras que, uma vez encontradas, tornam inúteis os números restantes da linha
+    private final int complete;
+
+    PhonePriority(int complete) {
+        this.complete = complete;
+    }
+
+    static PhonePriority fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /** Se os números restantes da linha já não podem mudar o resultado. */
+    boolean isComplete(int found) {
+        return (found & complete) == complete;
+    }
+
+    /** Máscara final da linha a partir das operadoras de todos os números dela. */
+    int apply(int found) {
+        int known = found & ~Operadora.SEM_OPERADORA.bit();
+        if (known == 0) return Operadora.SEM_OPERADORA.bit();
+        switch (this) {
+            case MOBILE:
+                int mobile = known & mobileBits();
+                return mobile != 0 ? mobile : known;
+            case FIXED:
+                return (known & Operadora.FIXO.bit()) != 0 ? Operadora.FIXO.bit() : known;
+            default:
+                return known;
+        }
+    }
+
+    private static int mobileBits() {
+        return Operadora.CLARO.bit() | Operadora.VIVO.bit() | Operadora.TIM.bit() | Operadora.OI.bit();
+    }
+}
@@ -0,0 +1,57 @@
+package consultaoperadora;
+
+import java.io.IOException;
+
+/**
+ * Leitor limitado a um trecho do arquivo ({@link Shard}): as linhas que começam antes de {@code end}.
+ * O leitor de baixo já deve ter sido aberto no início do trecho; como os trechos terminam em fronteira
+ * de registro, a última linha devolvida termina exatamente em {@code end}.
+ *
+ * Precisa de um leitor que saiba a posição (o CSVReader do OpenCSV, que devolve -1, lê até o fim).
+ */
+final class RangeRowReader implements RowReader {
+
+    private final RowReader reader;
+    private final long end;
+
+    RangeRowReader(RowReader reader, long end) {
+        this.reader = reader;
+        this.end = end;
+    }
+
+    @Override
+    public CsvFormat format() {
+        return reader.format();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (reader.position() >= end) return false;
+        return reader.next();
+    }
+
+    @Override
+    public int carriers() {
+        return reader.carriers();
+    }
+
+    @Override
+    public long position() {
+        return reader.position();
+    }
+
+    @Override
+    public int fieldCount() {
+        return reader.fieldCount();
+    }
+
+    @Override
+    public CharSequence field(int index) {
+        return reader.field(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
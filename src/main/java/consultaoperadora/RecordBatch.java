@@ -0,0 +1,134 @@
+package consultaoperadora;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lote de linhas que passa pelos estágios do {@link FilePipeline}.
+ *
+ * As colunas usadas de cada linha são copiadas para um único char[] (que cresce uma vez e é
+ * reaproveitado quando o lote volta para o pool), junto com o CNPJ já convertido e as operadoras.
+ * Cada estágio lê as linhas por um {@link Row} próprio, então vários escritores podem percorrer o
+ * mesmo lote ao mesmo tempo.
+ */
+final class RecordBatch {
+
+    final int capacity;
+    final int fields;
+
+    int size;
+    final long[] cnpjs;
+    // Máscara de Operadora.bit() de cada linha: 0 enquanto não classificada, e nas descartadas
+    final int[] carriers;
+    private char[] chars = new char[16 * 1024];
+    private int length;
+    private final int[] fieldEnds;
+
+    // Posição na entrada e total de linhas lidas (inclusive as descartadas) ao fim do lote
+    long endPosition;
+    int endTotal;
+
+    // Liberado pelo classificador quando todas as operadoras do lote foram calculadas
+    final Semaphore classified = new Semaphore(0);
+    // Escritores que ainda vão gravar linhas do lote; o último devolve o lote ao pool
+    final AtomicInteger pendingWriters = new AtomicInteger();
+
+    RecordBatch(int capacity, int fields) {
+        this.capacity = capacity;
+        this.fields = fields;
+        this.cnpjs = new long[capacity];
+        this.carriers = new int[capacity];
+        this.fieldEnds = new int[capacity * fields];
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    void clear() {
+        size = 0;
+        length = 0;
+    }
+
+    /** Copia as primeiras colunas do registro (que pode ser reaproveitado em seguida) para o lote. */
+    void add(CsvRecord record, long cnpj, int carriers) {
+        int row = size++;
+        for (int f = 0; f < fields; f++) {
+            CharSequence field = record.field(f);
+            int n = field.length();
+            if (length + n > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + n));
+            }
+            for (int i = 0; i < n; i++) {
+                chars[length++] = field.charAt(i);
+            }
+            fieldEnds[row * fields + f] = length;
+        }
+        cnpjs[row] = cnpj;
+        this.carriers[row] = carriers;
+    }
+
+    /** Cursor sobre as linhas de um lote; cada thread usa o seu. */
+    static final class Row implements CsvRecord {
+        private final Field[] views;
+        private RecordBatch batch;
+        private int first; // índice da primeira coluna da linha em fieldEnds
+
+        Row(int fields) {
+            views = new Field[fields];
+            for (int i = 0; i < fields; i++) {
+                views[i] = new Field(i);
+            }
+        }
+
+        Row select(RecordBatch batch, int row) {
+            this.batch = batch;
+            this.first = row * batch.fields;
+            return this;
+        }
+
+        @Override
+        public int fieldCount() {
+            return views.length;
+        }
+
+        @Override
+        public CharSequence field(int index) {
+            return views[index];
+        }
+
+        private int start(int index) {
+            int slot = first + index;
+            return slot == 0 ? 0 : batch.fieldEnds[slot - 1];
+        }
+
+        private final class Field implements CharSequence {
+            private final int index;
+
+            Field(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public int length() {
+                return batch.fieldEnds[first + index] - start(index);
+            }
+
+            @Override
+            public char charAt(int i) {
+                return batch.chars[start(index) + i];
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return toString().subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return new String(batch.chars, start(index), length());
+            }
+        }
+    }
+}
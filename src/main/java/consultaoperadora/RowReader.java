@@ -0,0 +1,32 @@
+package consultaoperadora;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Fonte de linhas de um CSV de entrada, lidas em ordem. Funciona como cursor: após {@link #next()}
+ * as colunas da linha atual ficam disponíveis pelos métodos de {@link CsvRecord}.
+ *
+ * Além das colunas cruas, a implementação pode já entregar as operadoras da linha calculadas
+ * antecipadamente (por exemplo, em paralelo); nesse caso o pipeline não classifica a linha de novo.
+ */
+interface RowReader extends CsvRecord, Closeable {
+
+    /** Formato do arquivo (delimitador, encoding, BOM), detectado na abertura. */
+    CsvFormat format();
+
+    /** Avança para a próxima linha do arquivo; false no fim. */
+    boolean next() throws IOException;
+
+    /**
+     * Operadoras já calculadas para a linha atual (máscara de {@link Operadora#bit()}), ou 0 se a linha
+     * ainda precisa ser classificada.
+     */
+    int carriers();
+
+    /**
+     * Posição em bytes no arquivo logo após a linha atual (onde uma leitura retomada começaria),
+     * ou -1 se a implementação não sabe a posição.
+     */
+    long position();
+}
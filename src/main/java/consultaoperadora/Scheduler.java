@@ -0,0 +1,67 @@
+package consultaoperadora;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executores compartilhados por todo o processamento, separados pelo tipo de trabalho:
+ *
+ * - {@link #io()}: tarefas que passam a maior parte do tempo esperando (o processamento de cada UF,
+ *   a leitura e a escrita do pipeline, a indexação global). Usa threads virtuais quando a JVM tem
+ *   (Java 21+), e threads de plataforma sob demanda nas versões anteriores.
+ * - {@link #cpu()}: trabalho de CPU (classificação dos lotes, parse dos blocos da leitura paralela),
+ *   num pool de threads de plataforma do tamanho da máquina.
+ *
+ * O projeto compila para Java 17, então as threads virtuais são obtidas por reflexão.
+ * Configuração: {@code -Dconsulta.cpuThreads} (padrão: núcleos disponíveis) e
+ * {@code -Dconsulta.virtualThreads=false} para não usar threads virtuais.
+ */
+final class Scheduler {
+
+    private static final int CPU_THREADS =
+            Integer.getInteger("consulta.cpuThreads", Runtime.getRuntime().availableProcessors());
+
+    private static final ForkJoinPool CPU = new ForkJoinPool(Math.max(1, CPU_THREADS));
+    private static final boolean VIRTUAL;
+    private static final ExecutorService IO;
+
+    static {
+        ExecutorService virtual = null;
+        if (!"false".equals(System.getProperty("consulta.virtualThreads"))) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                virtual = (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Java 17-20 (ou preview desativado): fica com threads de plataforma
+            }
+        }
+        VIRTUAL = virtual != null;
+        IO = VIRTUAL ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private Scheduler() {
+    }
+
+    static ExecutorService io() {
+        return IO;
+    }
+
+    static ForkJoinPool cpu() {
+        return CPU;
+    }
+
+    static int cpuThreads() {
+        return CPU.getParallelism();
+    }
+
+    static String describe() {
+        return (VIRTUAL ? "threads virtuais" : "threads de plataforma sob demanda") + " para E/S, " +
+                cpuThreads() + " thread(s) de CPU";
+    }
+}
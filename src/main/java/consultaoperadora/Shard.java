@@ -0,0 +1,100 @@
+package consultaoperadora;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidade de trabalho do modo distribuído ({@link Coordinator} / {@link Worker}): um arquivo de entrada
+ * inteiro ou, para os grandes, um trecho [start, end) de bytes que começa e termina em fronteira de
+ * registro. O trecho 0 começa no byte 0 (com cabeçalho e BOM); os demais começam no meio do arquivo.
+ *
+ * O worker recebe só o nome do arquivo e o resolve na sua própria pasta de entrada; o tamanho vai junto
+ * para conferir que os dois enxergam o mesmo arquivo.
+ */
+final class Shard {
+
+    final int id;
+    final String fileName;
+    final String state;
+    final long fileSize;
+    final int part;
+    final int parts;
+    final long start;
+    final long end;
+
+    // Só no coordenador: tentativas já feitas
+    int attempts;
+
+    Shard(int id, String fileName, String state, long fileSize, int part, int parts, long start, long end) {
+        this.id = id;
+        this.fileName = fileName;
+        this.state = state;
+        this.fileSize = fileSize;
+        this.part = part;
+        this.parts = parts;
+        this.start = start;
+        this.end = end;
+    }
+
+    long length() {
+        return end - start;
+    }
+
+    /** Para o log: "al_ativos.csv" ou "al_ativos.csv (parte 2/5)". */
+    String label() {
+        return parts == 1 ? fileName : fileName + " (parte " + (part + 1) + "/" + parts + ")";
+    }
+
+    /**
+     * Divide um arquivo em trechos de cerca de {@code shardBytes}, alinhados ao fim de registro pelo
+     * {@link CsvChunker} (uma leitura sequencial do arquivo, sem guardar os bytes). Arquivos menores
+     * que {@code shardBytes} ficam num trecho só, sem leitura.
+     *
+     * @param firstId id do primeiro trecho; os seguintes são consecutivos
+     */
+    static List<Shard> split(StateFilter.InputFile input, long shardBytes, int firstId) throws IOException {
+        List<Shard> shards = new ArrayList<>();
+        File file = input.file;
+        if (input.size <= shardBytes) {
+            shards.add(new Shard(firstId, input.name(), input.state, input.size, 0, 1, 0, input.size));
+            return shards;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        try (CsvChunker chunker = new CsvChunker(file, (int) Math.min(shardBytes, Integer.MAX_VALUE - 2048), 0)) {
+            long start = 0;
+            long end = chunker.start();
+            long length;
+            while ((length = chunker.skipChunk()) > 0) {
+                end += length;
+                ranges.add(new long[]{start, end});
+                start = end;
+            }
+            if (ranges.isEmpty()) ranges.add(new long[]{0, input.size});
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            shards.add(new Shard(firstId + i, input.name(), input.state, input.size, i, ranges.size(), range[0], range[1]));
+        }
+        return shards;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(id);
+        out.writeUTF(fileName);
+        out.writeUTF(state);
+        out.writeLong(fileSize);
+        out.writeInt(part);
+        out.writeInt(parts);
+        out.writeLong(start);
+        out.writeLong(end);
+    }
+
+    static Shard readFrom(DataInput in) throws IOException {
+        return new Shard(in.readInt(), in.readUTF(), in.readUTF(), in.readLong(), in.readInt(), in.readInt(),
+                in.readLong(), in.readLong());
+    }
+}
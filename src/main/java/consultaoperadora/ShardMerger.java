@@ -0,0 +1,176 @@
+package consultaoperadora;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Junção das saídas parciais do modo distribuído nos "{UF} - {OPERADORA}.csv" finais.
+ *
+ * Cada trecho ({@link Shard}) chega deduplicado só dentro dele. Os trechos de um arquivo são juntados
+ * na ordem em que aparecem no arquivo e uma linha só é copiada se o CNPJ dela não apareceu num trecho
+ * anterior: como cada trecho manteve a primeira ocorrência dentro dele, o resultado é a primeira
+ * ocorrência no arquivo inteiro, o mesmo da execução local. Os CNPJs de um trecho só entram no conjunto
+ * depois de todas as operadoras dele (no modo "all" o mesmo CNPJ pode estar em mais de uma).
+ * Com deduplicação global o conjunto vale para todos os arquivos, juntados em ordem alfabética: o CNPJ
+ * fica no primeiro arquivo em que aparece, como no índice global da execução local.
+ *
+ * As linhas são copiadas byte a byte, sem decodificar: o fim de registro é o '\n' sem o escape '"'
+ * antes (formato do {@link CarrierWriters}) e o CNPJ é o primeiro campo.
+ */
+final class ShardMerger implements Closeable {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Path outputFolder;
+    private final boolean offHeap;
+    private final CnpjSet globalSeen;
+    // Arquivos finais abertos: os de uma UF recebem os arquivos de entrada dela em sequência
+    private final Map<String, OutputStream> outputs = new LinkedHashMap<>();
+
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private byte[] line = new byte[1024];
+    private long[] kept = new long[1024];
+    private int keptCount;
+
+    ShardMerger(Path outputFolder, boolean globalDedup, boolean offHeap) {
+        this.outputFolder = outputFolder;
+        this.offHeap = offHeap;
+        this.globalSeen = globalDedup ? new CnpjSet(offHeap) : null;
+    }
+
+    /** Resultado da junção de um arquivo de entrada. */
+    static final class Result {
+        final int[] counts = new int[Operadora.values().length];
+        int uniqueCount;
+        long discarded;
+        long dedupBytes;
+    }
+
+    /**
+     * Junta os trechos de um arquivo de entrada, na ordem do arquivo.
+     *
+     * @param parts pasta com as saídas parciais de cada trecho
+     */
+    Result merge(String state, List<Path> parts) throws IOException {
+        Result result = new Result();
+        CnpjSet seen = globalSeen != null ? globalSeen : new CnpjSet(offHeap);
+        for (Path part : parts) {
+            keptCount = 0;
+            for (Operadora operadora : Operadora.values()) {
+                String name = CarrierWriters.fileName(state, operadora);
+                Path partial = part.resolve(name);
+                if (!Files.exists(partial)) continue;
+                result.counts[operadora.ordinal()] += copy(partial, name, seen, result);
+            }
+            for (int i = 0; i < keptCount; i++) {
+                if (seen.add(kept[i])) result.uniqueCount++;
+            }
+        }
+        result.dedupBytes = seen.footprintBytes();
+        return result;
+    }
+
+    /** Arquivos finais criados até agora. */
+    int filesCreated() {
+        return outputs.size();
+    }
+
+    // Copia as linhas do arquivo parcial cujo CNPJ não apareceu em trechos anteriores; devolve quantas
+    private int copy(Path partial, String name, CnpjSet seen, Result result) throws IOException {
+        int copied = 0;
+        byte[] header = null;
+        boolean escaped = false;
+        int length = 0;
+        int firstField = -1;
+        OutputStream out = null;
+        try (InputStream in = Files.newInputStream(partial)) {
+            int n;
+            while ((n = in.read(block)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = block[i];
+                    if (length == line.length) line = Arrays.copyOf(line, line.length * 2);
+                    line[length++] = b;
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '"') {
+                        escaped = true;
+                    } else if (b == ';' && firstField < 0) {
+                        firstField = length - 1;
+                    } else if (b == '\n') {
+                        if (header == null) {
+                            header = Arrays.copyOf(line, length);
+                        } else {
+                            long cnpj = parseCnpj(line, firstField < 0 ? length - 1 : firstField);
+                            if (cnpj < 0 || !seen.contains(cnpj)) {
+                                if (out == null) out = output(name, header);
+                                out.write(line, 0, length);
+                                copied++;
+                                if (cnpj >= 0) keep(cnpj);
+                            } else {
+                                result.discarded++;
+                            }
+                        }
+                        length = 0;
+                        firstField = -1;
+                    }
+                }
+            }
+        }
+        return copied;
+    }
+
+    // Arquivo final, criado com o cabeçalho da saída parcial na primeira linha copiada (como no CarrierWriters,
+    // não há arquivo sem linhas)
+    private OutputStream output(String name, byte[] header) throws IOException {
+        OutputStream out = outputs.get(name);
+        if (out == null) {
+            out = new BufferedOutputStream(new FileOutputStream(outputFolder.resolve(name).toFile()), BLOCK_SIZE);
+            out.write(header);
+            outputs.put(name, out);
+        }
+        return out;
+    }
+
+    private void keep(long cnpj) {
+        if (keptCount == kept.length) kept = Arrays.copyOf(kept, kept.length * 2);
+        kept[keptCount++] = cnpj;
+    }
+
+    // Mesma regra do CnpjSet.parse, direto nos bytes do primeiro campo
+    private static long parseCnpj(byte[] bytes, int end) {
+        int start = 0;
+        while (start < end && (bytes[start] & 0xFF) <= ' ') start++;
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') end--;
+        if (end - start != 14) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte c = bytes[i];
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (OutputStream out : outputs.values()) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+}
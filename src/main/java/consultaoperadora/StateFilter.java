@@ -0,0 +1,192 @@
+package consultaoperadora;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Seleção dos arquivos de entrada pela UF no nome (ex: "al_ativos.csv", "ativos_al.csv").
+ *
+ * As UFs aceitas vêm de {@code -Dconsulta.states}: regiões (NORTE, NORDESTE, CENTRO_OESTE, SUDESTE,
+ * SUL, BRASIL) e/ou siglas, separadas por vírgula; o padrão é NORDESTE. A configuração é compilada
+ * uma vez numa tabela indexada pelas duas letras da sigla: reconhecer a UF de um nome é uma única
+ * passada pelos caracteres, procurando um trecho de duas letras delimitado por '_' (ou pelo início
+ * do nome / pelo ".csv"), sem criar Strings.
+ *
+ * A listagem da pasta ({@link #scan}) já guarda tamanho e data de modificação de cada arquivo, lidos
+ * junto com a entrada do diretório, para o agendamento e o modo incremental não consultarem o disco de
+ * novo para cada arquivo.
+ */
+final class StateFilter {
+
+    private static final String[] ALL_STATES = {
+            "AC", "AL", "AM", "AP", "BA", "CE", "DF", "ES", "GO", "MA", "MG", "MS", "MT", "PA",
+            "PB", "PE", "PI", "PR", "RJ", "RN", "RO", "RR", "RS", "SC", "SE", "SP", "TO"};
+
+    private static final Map<String, List<String>> REGIONS = new LinkedHashMap<>();
+
+    static {
+        REGIONS.put("NORTE", Arrays.asList("AC", "AM", "AP", "PA", "RO", "RR", "TO"));
+        REGIONS.put("NORDESTE", Arrays.asList("AL", "BA", "CE", "MA", "PB", "PE", "PI", "RN", "SE"));
+        REGIONS.put("CENTRO_OESTE", Arrays.asList("DF", "GO", "MS", "MT"));
+        REGIONS.put("SUDESTE", Arrays.asList("ES", "MG", "RJ", "SP"));
+        REGIONS.put("SUL", Arrays.asList("PR", "RS", "SC"));
+        REGIONS.put("BRASIL", Arrays.asList(ALL_STATES));
+    }
+
+    private static final String EXTENSION = ".csv";
+
+    // Duas letras (A-Z) -> índice + 1 em ALL_STATES; 0 = não é uma UF selecionada
+    private final byte[] table = new byte[26 * 26];
+    private final Set<String> states;
+    private final String spec;
+
+    private StateFilter(String spec, Set<String> states) {
+        this.spec = spec;
+        this.states = Collections.unmodifiableSet(states);
+        for (String state : states) {
+            table[index(state.charAt(0), state.charAt(1))] = (byte) (Arrays.asList(ALL_STATES).indexOf(state) + 1);
+        }
+    }
+
+    /**
+     * Compila a configuração de UFs (ex: "NORDESTE", "SUDESTE,SUL", "BRASIL", "PE,AL").
+     *
+     * @throws IllegalArgumentException se algum item não for uma região nem uma UF
+     */
+    static StateFilter of(String spec) {
+        Set<String> states = new TreeSet<>();
+        for (String item : spec.split(",")) {
+            String name = item.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+            if (name.isEmpty()) continue;
+            List<String> region = REGIONS.get(name);
+            if (region != null) {
+                states.addAll(region);
+            } else if (Arrays.asList(ALL_STATES).contains(name)) {
+                states.add(name);
+            } else {
+                throw new IllegalArgumentException("UF ou região desconhecida em consulta.states: " + item.trim());
+            }
+        }
+        if (states.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma UF selecionada em consulta.states: " + spec);
+        }
+        return new StateFilter(spec, states);
+    }
+
+    Set<String> states() {
+        return states;
+    }
+
+    /** A configuração como foi passada, para os logs. */
+    String describe() {
+        return spec.trim() + " (" + states.size() + " UF" + (states.size() > 1 ? "s" : "") + ")";
+    }
+
+    /**
+     * UF de um arquivo de entrada: o primeiro trecho do nome (sem o ".csv") entre '_' que seja uma UF
+     * selecionada, sem diferenciar maiúsculas. Devolve null se o nome não termina em ".csv" ou não tem UF.
+     */
+    String match(String fileName) {
+        int end = fileName.length() - EXTENSION.length();
+        if (end < 2 || !fileName.regionMatches(true, end, EXTENSION, 0, EXTENSION.length())) return null;
+        return stateIn(fileName, end);
+    }
+
+    /** Como o {@link #match}, mas sem exigir a extensão; "XX" se não houver UF. */
+    String stateOf(String fileName) {
+        int end = fileName.length();
+        if (fileName.regionMatches(true, end - EXTENSION.length(), EXTENSION, 0, EXTENSION.length())) {
+            end -= EXTENSION.length();
+        }
+        String state = stateIn(fileName, end);
+        return state != null ? state : "XX";
+    }
+
+    private String stateIn(String name, int end) {
+        int start = 0;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || name.charAt(i) == '_') {
+                if (i - start == 2) {
+                    int slot = lookup(name.charAt(start), name.charAt(start + 1));
+                    if (slot > 0) return ALL_STATES[slot - 1];
+                }
+                start = i + 1;
+            }
+        }
+        return null;
+    }
+
+    private int lookup(char first, char second) {
+        int a = Character.toUpperCase(first) - 'A';
+        int b = Character.toUpperCase(second) - 'A';
+        if (a < 0 || a >= 26 || b < 0 || b >= 26) return 0;
+        return table[a * 26 + b];
+    }
+
+    private static int index(char first, char second) {
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    /**
+     * Lista os arquivos da pasta (sem subpastas) com UF selecionada. Tamanho e data de modificação vêm
+     * dos atributos lidos na própria listagem; links simbólicos valem pelo arquivo para o qual apontam
+     * (um link quebrado fica de fora).
+     */
+    List<InputFile> scan(Path folder) throws IOException {
+        List<InputFile> files = new ArrayList<>();
+        Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (!attributes.isRegularFile()) return FileVisitResult.CONTINUE;
+                String state = match(file.getFileName().toString());
+                if (state != null) {
+                    files.add(new InputFile(file.toFile(), state, attributes.size(),
+                            attributes.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Arquivo removido, sem permissão ou link quebrado: fica de fora
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /** Um arquivo de entrada selecionado, com os dados da listagem. */
+    static final class InputFile {
+        final File file;
+        final String state;
+        final long size;
+        final long lastModified;
+
+        InputFile(File file, String state, long size, long lastModified) {
+            this.file = file;
+            this.state = state;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        String name() {
+            return file.getName();
+        }
+    }
+}
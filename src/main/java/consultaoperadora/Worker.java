@@ -0,0 +1,170 @@
+package consultaoperadora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Worker do modo distribuído: conecta no {@link Coordinator}, recebe {@link Shard}s um por vez, processa
+ * cada um numa pasta temporária (o mesmo processamento de um arquivo da execução local, limitado ao
+ * trecho) e devolve pela própria conexão os "{UF} - {OPERADORA}.csv" parciais.
+ *
+ * Cada "slot" é uma conexão própria com o coordenador, processando um trecho por vez; vários slots
+ * processam trechos em paralelo no mesmo processo. O worker termina quando o coordenador avisa que não
+ * há mais trechos ou quando a conexão cai (os trechos em andamento são redistribuídos pelo coordenador).
+ */
+final class Worker {
+
+    /** Processa um trecho e grava as saídas em {@code folder}; devolve os nomes gerados, ou null se falhou. */
+    interface ShardProcessor {
+        List<String> process(Shard shard, Path folder);
+    }
+
+    // Tentativas de conexão enquanto o coordenador ainda não está ouvindo
+    private static final long CONNECT_TIMEOUT_MS = Long.getLong("consulta.worker.connectSeconds", 60) * 1000;
+
+    private final String host;
+    private final int port;
+    private final String config;
+    private final ShardProcessor processor;
+    private final AsyncLogger logger;
+    private final String name;
+
+    /**
+     * @param address "host:porta" do coordenador
+     * @param config  opções que mudam o resultado: o coordenador recusa workers com outra configuração
+     */
+    Worker(String address, String config, ShardProcessor processor, AsyncLogger logger) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Endereço do coordenador deve ser host:porta: " + address);
+        }
+        this.host = address.substring(0, colon);
+        this.port = Integer.parseInt(address.substring(colon + 1));
+        this.config = config;
+        this.processor = processor;
+        this.logger = logger;
+        this.name = hostName() + "/" + ProcessHandle.current().pid();
+    }
+
+    /** Abre {@code slots} conexões e processa trechos até o coordenador encerrar; devolve os trechos feitos. */
+    int run(int slots) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        int[] done = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            int slot = i;
+            Thread thread = new Thread(() -> done[slot] = serve(slot), "worker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        int total = 0;
+        for (int i = 0; i < slots; i++) {
+            threads.get(i).join();
+            total += done[i];
+        }
+        return total;
+    }
+
+    // Uma conexão: recebe, processa e devolve trechos até o coordenador mandar parar
+    private int serve(int slot) {
+        int processed = 0;
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            out.writeInt(Coordinator.MAGIC);
+            out.writeInt(Coordinator.PROTOCOL);
+            out.writeUTF(config);
+            out.writeUTF(name + "#" + slot);
+            out.flush();
+            if (!in.readBoolean()) {
+                logger.log("Coordenador recusou o worker: " + in.readUTF());
+                return 0;
+            }
+            logger.log("Worker " + name + "#" + slot + " conectado a " + host + ":" + port);
+
+            while (in.readBoolean()) {
+                Shard shard = Shard.readFrom(in);
+                Path folder = Files.createTempDirectory("consulta-shard-" + shard.id + "-");
+                try {
+                    List<String> outputs = processor.process(shard, folder);
+                    if (outputs == null) {
+                        out.writeBoolean(false);
+                        out.writeUTF("processamento de " + shard.label() + " falhou em " + name + " (ver log do worker)");
+                    } else {
+                        out.writeBoolean(true);
+                        out.writeInt(outputs.size());
+                        for (String output : outputs) {
+                            Path file = folder.resolve(output);
+                            out.writeUTF(output);
+                            out.writeLong(Files.size(file));
+                            try (InputStream data = Files.newInputStream(file)) {
+                                data.transferTo(out);
+                            }
+                        }
+                        processed++;
+                    }
+                    out.flush();
+                } finally {
+                    deleteFolder(folder);
+                }
+            }
+            logger.log("Worker " + name + "#" + slot + ": coordenador encerrou, " + processed + " trechos processados");
+        } catch (IOException e) {
+            logger.log("Worker " + name + "#" + slot + ": conexão com o coordenador perdida - " + e.getMessage());
+        }
+        return processed;
+    }
+
+    private Socket connect() throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                socket.connect(new InetSocketAddress(host, port), 10_000);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) throw e;
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido ao conectar no coordenador", e);
+            }
+        }
+    }
+
+    static void deleteFolder(Path folder) {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(folder);
+        } catch (IOException e) {
+            // Sobra na pasta temporária: não atrapalha o resultado
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+}
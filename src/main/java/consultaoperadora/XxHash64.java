@@ -0,0 +1,106 @@
+package consultaoperadora;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * XXH64 (xxHash de 64 bits, semente 0) do conteúdo de um arquivo, lido por memory-mapping em
+ * janelas. Usado pelo manifesto do modo incremental para saber se um CSV de entrada mudou.
+ *
+ * Não é um hash criptográfico: serve para detectar alteração, não adulteração.
+ */
+final class XxHash64 {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    // Múltiplo de 32 (tamanho do bloco do XXH64): só a última janela tem sobra
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private XxHash64() {
+    }
+
+    static long hashFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long v1 = P1 + P2;
+            long v2 = P2;
+            long v3 = 0;
+            long v4 = -P1;
+
+            long position = 0;
+            MappedByteBuffer window = null;
+            int offset = 0;
+            int limit = 0;
+            while (position < length) {
+                int size = (int) Math.min(WINDOW_SIZE, length - position);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                offset = 0;
+                limit = size;
+                while (limit - offset >= 32) {
+                    v1 = round(v1, window.getLong(offset));
+                    v2 = round(v2, window.getLong(offset + 8));
+                    v3 = round(v3, window.getLong(offset + 16));
+                    v4 = round(v4, window.getLong(offset + 24));
+                    offset += 32;
+                }
+                position += size;
+            }
+
+            long h;
+            if (length >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = P5;
+            }
+            h += length;
+
+            // Sobra (menos de 32 bytes) da última janela
+            while (limit - offset >= 8) {
+                h ^= round(0, window.getLong(offset));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+                offset += 8;
+            }
+            if (limit - offset >= 4) {
+                h ^= (window.getInt(offset) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                offset += 4;
+            }
+            while (offset < limit) {
+                h ^= (window.get(offset) & 0xFFL) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+                offset++;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return h;
+        }
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
@@ -0,0 +1,162 @@
+package consultaoperadora;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Modo distribuído na mesma JVM: coordenador, um worker com 2 slots e a junção dos trechos, comparados
+ * byte a byte com a execução local dos mesmos arquivos. Um trecho falha na primeira tentativa e é refeito.
+ *
+ * As pastas de entrada e saída do Main vêm do pom (consulta.inputFolder / consulta.outputFolder).
+ */
+public class CoordinatorTest {
+
+    private static final String HEADER = "cnpj_completo,razao_social,endereco_completo,email,ano_abertura,telefones,situacao\n";
+    // Trechos pequenos: cada arquivo vira vários, com linhas de várias linhas cruzando os limites
+    private static final long SHARD_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void mergedOutputsMatchLocalRun() throws Exception {
+        Path input = Paths.get(System.getProperty("consulta.inputFolder"));
+        Path output = Paths.get(System.getProperty("consulta.outputFolder"));
+        Worker.deleteFolder(input);
+        Worker.deleteFolder(output);
+        Files.createDirectories(input);
+        Files.createDirectories(output);
+        Random random = new Random(20240615L);
+        writeFixture(input.resolve("al_ativos.csv"), random, 400);
+        writeFixture(input.resolve("al_baixados.csv"), random, 250);
+        writeFixture(input.resolve("pe_ativos.csv"), random, 300);
+
+        PrintStream quiet = new PrintStream(PrintStream.nullOutputStream());
+        AsyncLogger logger = new AsyncLogger(quiet, Writer.nullWriter());
+        Main.useLogger(logger);
+        try {
+            // Execução local: os arquivos de cada UF, em ordem alfabética, nas mesmas saídas
+            List<StateFilter.InputFile> inputs = StateFilter.of("NORDESTE").scan(input);
+            inputs.sort(Comparator.comparing(StateFilter.InputFile::name));
+            Map<String, List<File>> byState = new LinkedHashMap<>();
+            for (StateFilter.InputFile in : inputs) {
+                byState.computeIfAbsent(in.state, s -> new ArrayList<>()).add(in.file);
+            }
+            for (Map.Entry<String, List<File>> e : byState.entrySet()) {
+                int[] ranks = new int[e.getValue().size()];
+                Arrays.fill(ranks, -1);
+                assertEquals(e.getValue().size(), Main.processState(e.getKey(), e.getValue(), ranks).size());
+            }
+            Map<String, byte[]> local = outputsOf(output);
+            assertTrue(local.size() > 2);
+
+            // Coordenador com um trecho que falha na primeira tentativa
+            Map<StateFilter.InputFile, List<Shard>> shardsByFile = new LinkedHashMap<>();
+            List<Shard> shards = new ArrayList<>();
+            for (StateFilter.InputFile in : inputs) {
+                List<Shard> fileShards = Shard.split(in, SHARD_BYTES, shards.size());
+                shardsByFile.put(in, fileShards);
+                shards.addAll(fileShards);
+            }
+            assertTrue("a entrada deveria virar vários trechos", shards.size() > inputs.size());
+
+            Shard failing = shards.get(1);
+            AtomicBoolean failed = new AtomicBoolean();
+            Worker.ShardProcessor processor = (shard, folder) ->
+                    shard.id == failing.id && failed.compareAndSet(false, true) ? null : Main.processShard(shard, folder);
+
+            Coordinator coordinator = new Coordinator(shards, "teste", temp.newFolder("trechos").toPath(), logger);
+            String address = coordinator.listen("127.0.0.1", 0);
+            Thread worker = new Thread(() -> {
+                try {
+                    new Worker(address, "teste", processor, logger).run(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "worker-teste");
+            worker.start();
+            coordinator.await();
+            worker.join(30_000);
+
+            assertEquals(1, coordinator.retries());
+            assertEquals(0, coordinator.failedShards());
+
+            Path merged = temp.newFolder("juncao").toPath();
+            try (ShardMerger merger = new ShardMerger(merged, false, false)) {
+                for (Map.Entry<StateFilter.InputFile, List<Shard>> e : shardsByFile.entrySet()) {
+                    List<Path> parts = new ArrayList<>();
+                    for (Shard shard : e.getValue()) {
+                        Path part = coordinator.result(shard);
+                        assertNotNull(shard.label(), part);
+                        parts.add(part);
+                    }
+                    merger.merge(e.getKey().state, parts);
+                }
+            }
+
+            Map<String, byte[]> distributed = outputsOf(merged);
+            assertEquals(local.keySet(), distributed.keySet());
+            for (Map.Entry<String, byte[]> e : local.entrySet()) {
+                assertArrayEquals(e.getKey(), e.getValue(), distributed.get(e.getKey()));
+            }
+        } finally {
+            logger.close();
+        }
+    }
+
+    // Linhas com CNPJs repetidos (dentro do arquivo e entre trechos), campos entre aspas com vírgula,
+    // aspas escapadas e quebras de linha, e telefones de operadoras diferentes
+    private static void writeFixture(Path file, Random random, int rows) throws IOException {
+        String[] phones = {"(82) 98660-8870", "(81) 3311-1200", "(11)  3514 - 4394 / ", "(99) 96869-9941",
+                "87 96384 7993", "(21) 99284-3748 / (21) 3923-5200", "", "(82) 8765-4321"};
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < rows; i++) {
+            long cnpj = 10_000_000_000_000L + random.nextInt(rows * 3 / 4);
+            String name = switch (random.nextInt(4)) {
+                case 0 -> "\"PADARIA, BOA\"";
+                case 1 -> "\"CASA \"\"NOVA\"\"\"";
+                case 2 -> "\"LOJA\nFILIAL " + i + "\"";
+                default -> "ACME LTDA";
+            };
+            csv.append(cnpj).append(',').append(name).append(",\"RUA A, ").append(i).append("\",x@y.com,")
+                    .append(1980 + random.nextInt(40)).append(',').append(phones[random.nextInt(phones.length)])
+                    .append(",ATIVA\n");
+        }
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, byte[]> outputsOf(Path folder) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (var list = Files.list(folder)) {
+            for (Path p : (Iterable<Path>) list::iterator) {
+                if (p.getFileName().toString().endsWith(".csv")) {
+                    files.put(p.getFileName().toString(), Files.readAllBytes(p));
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,124 @@
+package consultaoperadora;
+
+import static org.junit.Assert.assertEquals;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Equivalência da leitura em blocos ({@link CsvChunker} + {@link Latin1CsvParser}, a da leitura paralela)
+ * com o CSVReader do OpenCSV: CSVs aleatórios com aspas, aspas duplicadas, escapes e campos de várias
+ * linhas, lidos inteiros e em blocos de vários tamanhos.
+ */
+public class CsvParserParityTest {
+
+    private static final int KEPT_FIELDS = 8;
+    private static final int[] CHUNK_SIZES = {1, 7, 64, 1000, 1 << 20};
+    // Erro de leitura (aspas abertas no fim do arquivo), no lugar da linha em que ocorre
+    private static final String ERROR = "<erro>";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void chunkedParsingMatchesOpenCsv() throws IOException {
+        Random random = new Random(20240620L);
+        File file = temp.newFile("paridade.csv");
+        for (int t = 0; t < 400; t++) {
+            char separator = random.nextBoolean() ? ',' : ';';
+            byte[] data = randomCsv(random, separator, 1 + random.nextInt(t % 20 == 0 ? 2000 : 40));
+            Files.write(file.toPath(), data);
+
+            List<String> expected = readOpenCsv(data, separator);
+            String label = "caso " + t + ": " + new String(data, StandardCharsets.ISO_8859_1);
+            assertEquals(label, expected, parse(data, separator));
+            for (int chunkSize : CHUNK_SIZES) {
+                assertEquals(label + " (blocos de " + chunkSize + ")", expected, readChunked(file, separator, chunkSize));
+            }
+        }
+    }
+
+    // Campos curtos montados com os bytes que mudam o estado do parser
+    private static byte[] randomCsv(Random random, char separator, int rows) {
+        String[] pieces = {"a", "bc", "\"\"", "\\", "\\\"", " ", "\n", "\r\n", "\r", String.valueOf(separator),
+                ",", ";", "x\"y", "ç"};
+        StringBuilder csv = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            int fields = 1 + random.nextInt(9);
+            for (int f = 0; f < fields; f++) {
+                if (f > 0) csv.append(separator);
+                boolean quoted = random.nextInt(3) == 0;
+                if (quoted) csv.append('"');
+                int n = random.nextInt(5);
+                // Fora de aspas, quebras de linha e separadores nos pedaços criam mais linhas e campos
+                for (int i = 0; i < n; i++) {
+                    csv.append(pieces[random.nextInt(pieces.length)]);
+                }
+                if (quoted) csv.append('"');
+            }
+            if (r < rows - 1 || random.nextBoolean()) csv.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static List<String> readOpenCsv(byte[] data, char separator) throws IOException {
+        List<String> rows = new ArrayList<>();
+        try (CSVReader reader = CsvRowReader.newCsvReader(new ByteArrayInputStream(data), separator)) {
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                rows.add(row.length + " " + Arrays.toString(Arrays.copyOf(row, Math.min(row.length, KEPT_FIELDS))));
+            }
+        } catch (IOException | CsvValidationException e) {
+            rows.add(ERROR);
+        }
+        return rows;
+    }
+
+    private static List<String> readChunked(File file, char separator, int chunkSize) throws IOException {
+        List<String> rows = new ArrayList<>();
+        try (CsvChunker chunker = new CsvChunker(file, separator, chunkSize)) {
+            byte[] chunk;
+            while ((chunk = chunker.nextChunk()) != null) {
+                List<String> parsed = parse(chunk, separator);
+                rows.addAll(parsed);
+                if (!parsed.isEmpty() && parsed.get(parsed.size() - 1).equals(ERROR)) break;
+            }
+        }
+        return rows;
+    }
+
+    // Um bloco (ou o arquivo inteiro) lido como na leitura paralela
+    private static List<String> parse(byte[] chunk, char separator) {
+        List<String> rows = new ArrayList<>();
+        Latin1CsvParser parser = new Latin1CsvParser(separator, KEPT_FIELDS);
+        ByteBuffer buf = ByteBuffer.wrap(chunk);
+        int pos = 0;
+        try {
+            int end;
+            while ((end = parser.parse(buf, pos, chunk.length, true)) > pos) {
+                pos = end;
+                String[] row = new String[Math.min(parser.fieldCount(), KEPT_FIELDS)];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = parser.field(i).toString();
+                }
+                rows.add(parser.fieldCount() + " " + Arrays.toString(row));
+            }
+        } catch (IOException e) {
+            rows.add(ERROR);
+        }
+        return rows;
+    }
+}
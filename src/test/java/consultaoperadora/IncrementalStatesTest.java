@@ -0,0 +1,91 @@
+package consultaoperadora;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Modo incremental com -Dconsulta.states mais restrito que na execução anterior: as saídas das UFs que
+ * ficaram de fora continuam na pasta de saída. A configuração do Main é lida uma vez por JVM, por isso
+ * cada execução roda num processo à parte.
+ */
+public class IncrementalStatesTest {
+
+    private static final String HEADER = "cnpj_completo,razao_social,endereco_completo,email,ano_abertura,telefones,situacao\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void narrowingStatesKeepsOtherOutputs() throws Exception {
+        File input = temp.newFolder("entrada");
+        File output = temp.newFolder("saida");
+        Files.writeString(input.toPath().resolve("al_ativos.csv"), HEADER +
+                "10000000055537,ACME LTDA,\"RUA A, 10\",x@y.com,1981,(82) 98660-8870,ATIVA\n" +
+                "10000000039809,ACME LTDA,\"RUA A, 10\",x@y.com,1980,(82) 3311-1200,ATIVA\n", StandardCharsets.UTF_8);
+        Files.writeString(input.toPath().resolve("pe_ativos.csv"), HEADER +
+                "10000000007412,\"PADARIA, BOA\",\"RUA A, 10\",x@y.com,1982,(81) 96869-9941,ATIVA\n" +
+                "10000000049809,CAFE BAR,\"RUA A, 10\",x@y.com,1991,(81) 3514-4394,ATIVA\n", StandardCharsets.UTF_8);
+
+        runMain(input, output, "AL,PE");
+        Map<String, byte[]> pe = outputsOf(output.toPath(), "PE - ");
+        assertFalse("a primeira execução deveria gerar saídas de PE", pe.isEmpty());
+
+        runMain(input, output, "AL");
+        Map<String, byte[]> after = outputsOf(output.toPath(), "PE - ");
+        assertEquals(pe.keySet(), after.keySet());
+        for (Map.Entry<String, byte[]> e : pe.entrySet()) {
+            assertArrayEquals(e.getKey(), e.getValue(), after.get(e.getKey()));
+        }
+
+        // Voltando a selecionar PE, nada mudou na entrada: as saídas de antes seguem valendo
+        runMain(input, output, "AL,PE");
+        after = outputsOf(output.toPath(), "PE - ");
+        assertEquals(pe.keySet(), after.keySet());
+    }
+
+    private static Map<String, byte[]> outputsOf(Path folder, String prefix) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (var list = Files.list(folder)) {
+            for (Path p : (Iterable<Path>) list::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(prefix)) {
+                    files.put(name, Files.readAllBytes(p));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void runMain(File input, File output, String states) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dconsulta.inputFolder=" + input);
+        command.add("-Dconsulta.outputFolder=" + output);
+        command.add("-Dconsulta.states=" + states);
+        command.add("-Dconsulta.incremental=true");
+        command.add("-Dconsulta.metrics.jmx=false");
+        command.add("-Dconsulta.carrierCache.persistent=false");
+        command.add("consultaoperadora.Main");
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(output.getParentFile(), "main-" + states.replace(',', '_') + ".out"))
+                .start();
+        assertEquals("Main terminou com erro (states=" + states + ")", 0, process.waitFor());
+    }
+}
@@ -0,0 +1,81 @@
+package consultaoperadora;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Equivalência do {@link PhoneNormalizer} com o regex original ({@link PhoneNormalizer#normalizeWithRegex}):
+ * os mesmos casos de borda e um corpus aleatório com semente fixa.
+ */
+public class PhoneNormalizerTest {
+
+    private static final String[] FIXTURES = {
+            "",
+            "   ",
+            "()",
+            "(82) 3311-1200",
+            "(82)3311-1200",
+            "(82)  9 8765-4321",
+            "(82) 8765-4321",
+            "(82) 5765-4321",
+            "(82)",
+            "(82) ",
+            "(8) 3311-1200",
+            "() 82-33111200",
+            "82-33111200",
+            "82-933111200",
+            "82 98765 4321",
+            "82--  98765--4321",
+            "82 - 3311 - 1200",
+            "8233111200",
+            "82987654321",
+            "829876543210",
+            "82-3311120",
+            "82-331",
+            "0082-33111200",
+            "tel: 82-33111200 / (81) 3222-0000",
+            "(81) 3222-0000 / 82-33111200",
+            "(81) - 3222 0000",
+            "(81)-",
+            "((82) 3311-1200",
+            "(82) (83) 3311-1200",
+            "abc (1a) 82 3311 1200",
+            "\t82-33111200\t",
+            "82-6311-1200",
+            "(82) 6311 1200 ramal 12",
+            "(11) 12345678901234",
+            "1-2-3-4-5-6-7-8-9-0",
+            "12345",
+            "٨٢-٣٣١١١٢٠٠",
+    };
+
+    @Test
+    public void fixturesMatchRegex() {
+        for (String fixture : FIXTURES) {
+            assertEquivalent(fixture);
+        }
+    }
+
+    @Test
+    public void randomCorpusMatchesRegex() {
+        // Alfabeto concentrado no que o regex reconhece: dígitos, separadores e parênteses
+        char[] alphabet = "0123456789012345678901234567890123456789 --()(/)xa\t".toCharArray();
+        Random random = new Random(20240601L);
+        for (int i = 0; i < 200_000; i++) {
+            int length = random.nextInt(24);
+            StringBuilder telefones = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                telefones.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertEquivalent(telefones.toString());
+        }
+    }
+
+    private static void assertEquivalent(String telefones) {
+        PhoneNormalizer normalizer = new PhoneNormalizer();
+        String actual = normalizer.normalizeFirst(telefones) ? normalizer.toString() : "";
+        assertEquals("telefones = \"" + telefones + "\"", PhoneNormalizer.normalizeWithRegex(telefones), actual);
+    }
+}